@@ -1,7 +1,19 @@
 package ua.nrubantseva.api.users;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import ua.nrubantseva.api.users.exception.response.ErrorMessageResponse;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.service.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Main class for starting the Spring Boot application.
@@ -13,12 +25,41 @@ public class Main {
 
     /**
      * The main method to start the Spring Boot application.
+     * When 'user.startup.exit-after-start' is set, the application exits once started, which is used
+     * by training runs recording the class-data sharing archive.
      *
      * @param args The command-line arguments passed to the application.
      */
     public static void main(String[] args) {
-        SpringApplication.run(Main.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(Main.class, args);
+        if (context.getEnvironment().getProperty("user.startup.exit-after-start", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
-}
+    /**
+     * Creates a runner warming up the JPA and Jackson paths used by the first requests, when 'user.startup.warmup'
+     * is set. Runners complete before the application reports itself ready to accept traffic.
+     * The property is checked at runtime rather than with a condition, so ahead-of-time processed builds honor it.
+     *
+     * @param warmup       Whether the warm-up is enabled.
+     * @param userService  The service whose queries are warmed up.
+     * @param objectMapper The mapper whose serializers are warmed up.
+     * @return The warm-up runner.
+     */
+    @Bean
+    public ApplicationRunner warmupRunner(@Value("${user.startup.warmup:false}") boolean warmup,
+                                          UserService userService, ObjectMapper objectMapper) {
+        return args -> {
+            if (!warmup) {
+                return;
+            }
+            List<User> users = userService.findByBirthDateRange(LocalDate.EPOCH, LocalDate.EPOCH.plusDays(1));
+            objectMapper.writeValueAsBytes(users);
+            objectMapper.writeValueAsBytes(new User(UUID.randomUUID(), "warmup@example.com", "warmup", "warmup",
+                    LocalDate.EPOCH, null, null));
+            objectMapper.writeValueAsBytes(new ErrorMessageResponse("warmup", "/users", "GET"));
+        };
+    }
 
+}
@@ -0,0 +1,97 @@
+package ua.nrubantseva.api.users.coalescing;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with equal keys into a single execution.
+ * The first caller for a key (the leader) runs the supplier, while callers arriving before it completes
+ * (the followers) share the future of its result. Results are not retained once the leader completes.
+ *
+ * @param <K> The type of the keys identifying equal calls.
+ * @param <V> The type of the shared results.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Executions currently in progress by key.
+     */
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Number of calls that ran the supplier.
+     */
+    private final AtomicLong leaders = new AtomicLong();
+
+    /**
+     * Number of calls that shared the result of another call.
+     */
+    private final AtomicLong followers = new AtomicLong();
+
+    /**
+     * Returns the future of the supplier, sharing a concurrent execution for the same key if there is one.
+     * Followers do not block: they receive the future of the leader, so callers waiting for the same key
+     * hold no thread.
+     *
+     * @param key      The key identifying equal calls.
+     * @param supplier The supplier starting the execution and returning its future.
+     * @return A copy of the shared future, so cancelling it does not affect the other callers.
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> supplier) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            followers.incrementAndGet();
+            return existing.copy();
+        }
+
+        leaders.incrementAndGet();
+        CompletableFuture<V> execution;
+        try {
+            execution = supplier.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        execution.whenComplete((value, e) -> {
+            inFlight.remove(key, own);
+            if (e != null) {
+                own.completeExceptionally(e);
+            } else {
+                own.complete(value);
+            }
+        });
+        return own.copy();
+    }
+
+    /**
+     * Returns the number of calls that ran the supplier.
+     *
+     * @return The number of leader calls.
+     */
+    public long getLeaders() {
+        return leaders.get();
+    }
+
+    /**
+     * Returns the number of calls that shared the result of another call.
+     *
+     * @return The number of follower calls.
+     */
+    public long getFollowers() {
+        return followers.get();
+    }
+
+    /**
+     * Returns the number of executions currently in progress.
+     *
+     * @return The number of in-flight keys.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
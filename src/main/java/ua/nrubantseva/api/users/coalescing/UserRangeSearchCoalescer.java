@@ -0,0 +1,85 @@
+package ua.nrubantseva.api.users.coalescing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ua.nrubantseva.api.users.dto.UserRangeSearchResult;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+import ua.nrubantseva.api.users.executor.WorkloadExecutors;
+import ua.nrubantseva.api.users.service.UserService;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Component collapsing concurrent identical birth date range searches into a single query.
+ * Every request waiting for the same range receives the same UserRangeSearchResult,
+ * so the serialized response is shared as well. The query runs on the scan executor, and requests joining it
+ * only wait for its future, so they take neither a request thread nor a scan executor thread.
+ */
+@Component
+public class UserRangeSearchCoalescer {
+
+    /**
+     * Service running the range searches.
+     */
+    private final UserService userService;
+
+    /**
+     * Executors running the range queries on the scan executor.
+     */
+    private final WorkloadExecutors workloadExecutors;
+
+    /**
+     * Range searches in progress.
+     */
+    private final SingleFlight<Range, UserRangeSearchResult> singleFlight = new SingleFlight<>();
+
+    /**
+     * Constructs a new UserRangeSearchCoalescer and publishes its counters as metrics.
+     *
+     * @param userService       The service running the range searches.
+     * @param workloadExecutors The executors running the range queries.
+     * @param meterRegistry     The registry the coalescing metrics are published to.
+     */
+    public UserRangeSearchCoalescer(UserService userService, WorkloadExecutors workloadExecutors,
+                                    MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.workloadExecutors = workloadExecutors;
+
+        FunctionCounter.builder("users.coalescing.requests", singleFlight, SingleFlight::getLeaders)
+                .tag("role", "leader")
+                .description("Range searches that ran a query")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.coalescing.requests", singleFlight, SingleFlight::getFollowers)
+                .tag("role", "follower")
+                .description("Range searches that shared the query of a concurrent identical search")
+                .register(meterRegistry);
+        Gauge.builder("users.coalescing.in.flight", singleFlight, SingleFlight::getInFlight)
+                .description("Distinct range queries currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retrieves the users with birth dates within the specified range, sharing a concurrent identical search.
+     *
+     * @param fromDate The start date of the birth date range.
+     * @param toDate   The end date of the birth date range.
+     * @return A future completed with the result of the range search.
+     * @throws ConcurrencyLimitExceededException If the scan executor is saturated.
+     */
+    public CompletableFuture<UserRangeSearchResult> findByBirthDateRange(LocalDate fromDate, LocalDate toDate) {
+        return singleFlight.executeAsync(new Range(fromDate, toDate), () -> workloadExecutors.getScans().submit(
+                () -> new UserRangeSearchResult(userService.findByBirthDateRange(fromDate, toDate))));
+    }
+
+    /**
+     * Key identifying a birth date range search.
+     *
+     * @param fromDate The start date of the birth date range.
+     * @param toDate   The end date of the birth date range.
+     */
+    private record Range(LocalDate fromDate, LocalDate toDate) {
+    }
+}
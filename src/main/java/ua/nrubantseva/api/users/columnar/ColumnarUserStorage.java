@@ -0,0 +1,108 @@
+package ua.nrubantseva.api.users.columnar;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.StreamSupport;
+
+/**
+ * UserStorage holding the users in memory in a ColumnarUserStore, active with the 'columnar' profile.
+ * It replaces the JPA repository for the service and the email write-behind queue, so users are neither
+ * persisted nor cached by Hibernate. Writes are applied immediately, transactions have no effect on them,
+ * and deletes remove users physically, so there are never tombstones to purge.
+ */
+@Primary
+@Profile("columnar")
+@Repository
+public class ColumnarUserStorage implements UserStorage {
+
+    /**
+     * Store holding the users.
+     */
+    private final ColumnarUserStore store;
+
+    /**
+     * Constructs a new ColumnarUserStorage and publishes the store metrics.
+     *
+     * @param initialCapacity The number of users to allocate room for.
+     * @param offHeap         Whether the string bytes are stored off-heap.
+     * @param meterRegistry   The registry the store metrics are published to.
+     */
+    public ColumnarUserStorage(@Value("${user.storage.columnar.initial-capacity:1024}") int initialCapacity,
+                               @Value("${user.storage.columnar.off-heap:true}") boolean offHeap,
+                               MeterRegistry meterRegistry) {
+        this.store = new ColumnarUserStore(initialCapacity, offHeap);
+        Gauge.builder("users.columnar.rows", store, ColumnarUserStore::size)
+                .description("Users held by the columnar store")
+                .register(meterRegistry);
+        Gauge.builder("users.columnar.strings", store, ColumnarUserStore::stringCount)
+                .description("Distinct strings held by the columnar store")
+                .register(meterRegistry);
+        Gauge.builder("users.columnar.strings.dead", store, ColumnarUserStore::deadStringBytes)
+                .description("Memory of the columnar store held by strings no user refers to, not reclaimed yet")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.columnar.allocated", store, ColumnarUserStore::allocatedBytes)
+                .description("Memory allocated by the columnar store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <S extends User> S saveAndFlush(S user) {
+        store.save(user);
+        return user;
+    }
+
+    @Override
+    public <S extends User> List<S> saveAllAndFlush(Iterable<S> users) {
+        List<S> saved = new ArrayList<>();
+        users.forEach(saved::add);
+        store.saveAll(List.copyOf(saved));
+        return saved;
+    }
+
+    @Override
+    public Optional<User> findById(UUID id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public boolean existsById(UUID id) {
+        return store.existsById(id);
+    }
+
+    @Override
+    public List<User> findAllById(Iterable<UUID> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(store::findById)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return store.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByBirthDateGreaterThanEqualAndBirthDateLessThanEqual(LocalDate fromDate, LocalDate toDate) {
+        return store.findByBirthDateBetween(fromDate, toDate);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        store.delete(id);
+    }
+}
@@ -0,0 +1,543 @@
+package ua.nrubantseva.api.users.columnar;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory user store laid out in columns instead of one object graph per user.
+ * Each user is a row: its ID is held as two longs, its birth date as an epoch day, and its strings as IDs
+ * into a deduplicated UTF-8 arena. Users are found by ID and by email through open-addressing tables of row numbers,
+ * and range searches scan the birth date column. User objects are only materialized for the rows a read returns.
+ * Deleting a user moves the last row into its place, so the columns stay dense. Every string reference of a row
+ * holds a reference in the arena, released when the value is replaced or the row deleted, so the strings
+ * no user refers to are reclaimed.
+ */
+public class ColumnarUserStore {
+
+    /**
+     * String reference of a null value.
+     */
+    private static final int NULL = -1;
+
+    /**
+     * Arena holding the strings of all columns.
+     */
+    private final Utf8StringArena strings;
+
+    /**
+     * Most significant bits of the user IDs.
+     */
+    private long[] idMostSignificantBits;
+
+    /**
+     * Least significant bits of the user IDs.
+     */
+    private long[] idLeastSignificantBits;
+
+    /**
+     * Birth dates, as epoch days.
+     */
+    private int[] birthDates;
+
+    /**
+     * String references of the emails.
+     */
+    private int[] emails;
+
+    /**
+     * String references of the first names.
+     */
+    private int[] firstNames;
+
+    /**
+     * String references of the last names.
+     */
+    private int[] lastNames;
+
+    /**
+     * String references of the addresses, NULL if absent.
+     */
+    private int[] addresses;
+
+    /**
+     * String references of the phones, NULL if absent.
+     */
+    private int[] phones;
+
+    /**
+     * Open-addressing table of row numbers plus one by user ID, zero for an empty slot.
+     */
+    private int[] idSlots;
+
+    /**
+     * Row number plus one of the user owning each string as email, zero if none, by string ID.
+     */
+    private int[] rowsByEmail;
+
+    /**
+     * Number of rows.
+     */
+    private int size;
+
+    /**
+     * Lock guarding the columns and tables.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs a new ColumnarUserStore.
+     *
+     * @param initialCapacity The number of users to allocate room for.
+     * @param offHeap         Whether the string bytes are stored off-heap.
+     */
+    public ColumnarUserStore(int initialCapacity, boolean offHeap) {
+        int capacity = Math.max(16, initialCapacity);
+        strings = new Utf8StringArena(capacity * 2, offHeap);
+        idMostSignificantBits = new long[capacity];
+        idLeastSignificantBits = new long[capacity];
+        birthDates = new int[capacity];
+        emails = new int[capacity];
+        firstNames = new int[capacity];
+        lastNames = new int[capacity];
+        addresses = new int[capacity];
+        phones = new int[capacity];
+        idSlots = new int[Utf8StringArena.tableSize(capacity)];
+        rowsByEmail = new int[capacity * 2];
+    }
+
+    /**
+     * Retrieves the user with the specified ID.
+     *
+     * @param id The ID of the user.
+     * @return The user, if any.
+     */
+    public Optional<User> findById(UUID id) {
+        lock.readLock().lock();
+        try {
+            int row = findRow(id);
+            return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a user with the specified ID exists.
+     *
+     * @param id The ID of the user.
+     * @return True if the user exists.
+     */
+    public boolean existsById(UUID id) {
+        lock.readLock().lock();
+        try {
+            return findRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the user with the specified email.
+     *
+     * @param email The email of the user.
+     * @return The user, if any.
+     */
+    public Optional<User> findByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            int emailId = strings.find(email);
+            int row = emailId < 0 || emailId >= rowsByEmail.length ? -1 : rowsByEmail[emailId] - 1;
+            return row < 0 ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the users with birth dates within the specified range, scanning the birth date column.
+     *
+     * @param fromDate The start date of the range, inclusive.
+     * @param toDate   The end date of the range, inclusive.
+     * @return The users whose birth dates fall within the range.
+     */
+    public List<User> findByBirthDateBetween(LocalDate fromDate, LocalDate toDate) {
+        long from = fromDate.toEpochDay();
+        long to = toDate.toEpochDay();
+        lock.readLock().lock();
+        try {
+            List<User> users = new ArrayList<>();
+            for (int row = 0; row < size; row++) {
+                if (birthDates[row] >= from && birthDates[row] <= to) {
+                    users.add(materialize(row));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or replaces a user. A user without an ID is assigned a new random one.
+     *
+     * @param user The user to save.
+     * @return The saved user.
+     * @throws DataIntegrityViolationException If another user has the same email.
+     */
+    public User save(User user) {
+        return saveAll(List.of(user)).get(0);
+    }
+
+    /**
+     * Inserts or replaces users atomically: either all of them are saved or none is.
+     * Users without an ID are assigned a new random one.
+     *
+     * @param users The users to save.
+     * @return The saved users.
+     * @throws DataIntegrityViolationException If a user has the same email as another user.
+     */
+    public List<User> saveAll(Collection<User> users) {
+        lock.writeLock().lock();
+        try {
+            Map<String, User> owners = new HashMap<>();
+            for (User user : users) {
+                User previousOwner = owners.put(user.getEmail(), user);
+                int emailId = strings.find(user.getEmail());
+                int ownerRow = emailId < 0 || emailId >= rowsByEmail.length ? -1 : rowsByEmail[emailId] - 1;
+                if ((previousOwner != null && (user.getId() == null || !user.getId().equals(previousOwner.getId())))
+                        || (ownerRow >= 0 && !idAt(ownerRow).equals(user.getId()) && !isSavedWithOtherEmail(ownerRow, users))) {
+                    throw new DataIntegrityViolationException("Duplicate email " + user.getEmail(),
+                            new ConstraintViolationException("Duplicate email " + user.getEmail(), null,
+                                    User.EMAIL_UNIQUE_CONSTRAINT));
+                }
+            }
+
+            for (User user : users) {
+                if (user.getId() == null) {
+                    user.setId(UUID.randomUUID());
+                }
+                int row = findRow(user.getId());
+                if (row < 0) {
+                    write(appendRow(user.getId()), user, false);
+                } else {
+                    if (rowsByEmail[emails[row]] == row + 1) {
+                        rowsByEmail[emails[row]] = 0;
+                    }
+                    write(row, user, true);
+                }
+            }
+            return List.copyOf(users);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the user with the specified ID, moving the last row into its place.
+     *
+     * @param id The ID of the user.
+     * @return True if the user existed.
+     */
+    public boolean delete(UUID id) {
+        lock.writeLock().lock();
+        try {
+            int row = findRow(id);
+            if (row < 0) {
+                return false;
+            }
+            removeIdSlot(id);
+            if (rowsByEmail[emails[row]] == row + 1) {
+                rowsByEmail[emails[row]] = 0;
+            }
+            releaseStrings(row);
+
+            int last = --size;
+            if (row != last) {
+                idMostSignificantBits[row] = idMostSignificantBits[last];
+                idLeastSignificantBits[row] = idLeastSignificantBits[last];
+                birthDates[row] = birthDates[last];
+                emails[row] = emails[last];
+                firstNames[row] = firstNames[last];
+                lastNames[row] = lastNames[last];
+                addresses[row] = addresses[last];
+                phones[row] = phones[last];
+                idSlots[findSlot(idAt(row))] = row + 1;
+                rowsByEmail[emails[row]] = row + 1;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of users.
+     *
+     * @return The number of users.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct strings held by the arena.
+     *
+     * @return The number of strings.
+     */
+    public int stringCount() {
+        lock.readLock().lock();
+        try {
+            return strings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the arena held by strings no user refers to, not reclaimed yet.
+     *
+     * @return The dead bytes.
+     */
+    public long deadStringBytes() {
+        lock.readLock().lock();
+        try {
+            return strings.deadBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the store, columns, tables and arena included.
+     *
+     * @return The allocated size, in bytes.
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) idMostSignificantBits.length * (2 * Long.BYTES + 6 * Integer.BYTES);
+            return columns + (long) idSlots.length * Integer.BYTES + (long) rowsByEmail.length * Integer.BYTES
+                    + strings.indexBytes() + strings.chunkBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if the user stored at a row is also part of the saved users, with another email.
+     * This lets a batch swap the emails of two users.
+     *
+     * @param row   The row of the stored user.
+     * @param users The users being saved.
+     * @return True if the stored user is saved with another email.
+     */
+    private boolean isSavedWithOtherEmail(int row, Collection<User> users) {
+        UUID id = idAt(row);
+        String email = strings.get(emails[row]);
+        return users.stream().anyMatch(user -> id.equals(user.getId()) && !email.equals(user.getEmail()));
+    }
+
+    /**
+     * Appends an empty row, growing the columns and the ID table if needed.
+     *
+     * @param id The ID of the new user.
+     * @return The new row.
+     */
+    private int appendRow(UUID id) {
+        if (size == idMostSignificantBits.length) {
+            int capacity = size * 2;
+            idMostSignificantBits = Arrays.copyOf(idMostSignificantBits, capacity);
+            idLeastSignificantBits = Arrays.copyOf(idLeastSignificantBits, capacity);
+            birthDates = Arrays.copyOf(birthDates, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            phones = Arrays.copyOf(phones, capacity);
+        }
+        int row = size++;
+        idMostSignificantBits[row] = id.getMostSignificantBits();
+        idLeastSignificantBits[row] = id.getLeastSignificantBits();
+        if (idSlots.length < Utf8StringArena.tableSize(size)) {
+            rehashIds(idSlots.length * 2);
+        }
+        idSlots[findSlot(id)] = row + 1;
+        return row;
+    }
+
+    /**
+     * Writes the attributes of a user to a row. The new strings are interned before the replaced ones
+     * are released, so a value kept by the user is not freed in between.
+     *
+     * @param row     The row to write.
+     * @param user    The user to write.
+     * @param replace Whether the row holds a user whose strings are replaced.
+     */
+    private void write(int row, User user, boolean replace) {
+        int email = strings.intern(user.getEmail());
+        int firstName = strings.intern(user.getFirstName());
+        int lastName = strings.intern(user.getLastName());
+        int address = user.getAddress() == null ? NULL : strings.intern(user.getAddress());
+        int phone = user.getPhone() == null ? NULL : strings.intern(user.getPhone());
+        if (replace) {
+            releaseStrings(row);
+        }
+
+        birthDates[row] = Math.toIntExact(user.getBirthDate().toEpochDay());
+        emails[row] = email;
+        firstNames[row] = firstName;
+        lastNames[row] = lastName;
+        addresses[row] = address;
+        phones[row] = phone;
+
+        if (rowsByEmail.length < strings.idLimit()) {
+            rowsByEmail = Arrays.copyOf(rowsByEmail, Math.max(strings.idLimit(), rowsByEmail.length * 2));
+        }
+        rowsByEmail[email] = row + 1;
+    }
+
+    /**
+     * Releases the references the strings of a row hold in the arena.
+     *
+     * @param row The row whose strings are released.
+     */
+    private void releaseStrings(int row) {
+        strings.release(emails[row]);
+        strings.release(firstNames[row]);
+        strings.release(lastNames[row]);
+        if (addresses[row] != NULL) {
+            strings.release(addresses[row]);
+        }
+        if (phones[row] != NULL) {
+            strings.release(phones[row]);
+        }
+    }
+
+    /**
+     * Materializes the user stored at a row.
+     *
+     * @param row The row of the user.
+     * @return A new User object.
+     */
+    private User materialize(int row) {
+        return new User(idAt(row), strings.get(emails[row]), strings.get(firstNames[row]), strings.get(lastNames[row]),
+                LocalDate.ofEpochDay(birthDates[row]),
+                addresses[row] == NULL ? null : strings.get(addresses[row]),
+                phones[row] == NULL ? null : strings.get(phones[row]));
+    }
+
+    /**
+     * Returns the ID of the user stored at a row.
+     *
+     * @param row The row of the user.
+     * @return The user ID.
+     */
+    private UUID idAt(int row) {
+        return new UUID(idMostSignificantBits[row], idLeastSignificantBits[row]);
+    }
+
+    /**
+     * Finds the row of a user.
+     *
+     * @param id The ID of the user, can be null.
+     * @return The row, or -1 if the user is not stored.
+     */
+    private int findRow(UUID id) {
+        if (id == null) {
+            return -1;
+        }
+        int slot = findSlot(id);
+        return idSlots[slot] - 1;
+    }
+
+    /**
+     * Finds the slot of the ID table holding a user, or the empty slot where it would be inserted.
+     *
+     * @param id The ID of the user.
+     * @return The slot.
+     */
+    private int findSlot(UUID id) {
+        int mask = idSlots.length - 1;
+        int slot = hash(id.getMostSignificantBits(), id.getLeastSignificantBits()) & mask;
+        while (idSlots[slot] != 0) {
+            int row = idSlots[slot] - 1;
+            if (idMostSignificantBits[row] == id.getMostSignificantBits()
+                    && idLeastSignificantBits[row] == id.getLeastSignificantBits()) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a user from the ID table, shifting back the entries that follow it in its probe sequence.
+     *
+     * @param id The ID of the user.
+     */
+    private void removeIdSlot(UUID id) {
+        int mask = idSlots.length - 1;
+        int hole = findSlot(id);
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (idSlots[slot] == 0) {
+                break;
+            }
+            int row = idSlots[slot] - 1;
+            int home = hash(idMostSignificantBits[row], idLeastSignificantBits[row]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                idSlots[hole] = idSlots[slot];
+                hole = slot;
+            }
+        }
+        idSlots[hole] = 0;
+    }
+
+    /**
+     * Rebuilds the ID table with the specified number of slots.
+     *
+     * @param tableSize The new number of slots, a power of two.
+     */
+    private void rehashIds(int tableSize) {
+        idSlots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int row = 0; row < size - 1; row++) {
+            int slot = hash(idMostSignificantBits[row], idLeastSignificantBits[row]) & mask;
+            while (idSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            idSlots[slot] = row + 1;
+        }
+    }
+
+    /**
+     * Hashes a user ID.
+     *
+     * @param mostSignificantBits  The most significant bits of the ID.
+     * @param leastSignificantBits The least significant bits of the ID.
+     * @return The hash.
+     */
+    private static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
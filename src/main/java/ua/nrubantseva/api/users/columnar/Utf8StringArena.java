@@ -0,0 +1,458 @@
+package ua.nrubantseva.api.users.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Arena of deduplicated, reference-counted UTF-8 strings, each identified by an int.
+ * Strings are stored as a varint length followed by their bytes, in fixed-size chunks allocated on the heap
+ * or off-heap. Interning a string already in the arena returns its existing ID, so values shared by many users,
+ * such as first names, are stored once. Each intern adds a reference that is dropped by release: the ID of a string
+ * without references is reused by the next new string, and its bytes are reclaimed by compacting the chunks
+ * in place once dead bytes outnumber live ones. IDs are not changed by compaction. Not thread-safe, callers
+ * synchronize access.
+ */
+class Utf8StringArena {
+
+    /**
+     * Number of bits of a position addressing a byte within a chunk.
+     */
+    private static final int CHUNK_BITS = 24;
+
+    /**
+     * Size of a chunk, in bytes.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * Whether the chunks are allocated off-heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Chunks holding the string bytes.
+     */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Position of each string, as chunk index and offset within the chunk.
+     */
+    private long[] positions;
+
+    /**
+     * Hash of the bytes of each string.
+     */
+    private int[] hashes;
+
+    /**
+     * Number of references to each string, zero for a free ID.
+     */
+    private int[] refCounts;
+
+    /**
+     * Stack of the free IDs, reused before new ones are allocated.
+     */
+    private int[] freeIds = new int[16];
+
+    /**
+     * Number of free IDs.
+     */
+    private int freeCount;
+
+    /**
+     * Open-addressing table of string IDs plus one by hash, zero for an empty slot.
+     */
+    private int[] slots;
+
+    /**
+     * Number of IDs allocated, free ones included.
+     */
+    private int count;
+
+    /**
+     * Number of bytes of the encoded strings in the chunks, dead ones included.
+     */
+    private long usedBytes;
+
+    /**
+     * Number of bytes of the encoded strings without references, reclaimed by the next compaction.
+     */
+    private long deadBytes;
+
+    /**
+     * Constructs a new Utf8StringArena.
+     *
+     * @param initialCapacity The number of strings to allocate room for.
+     * @param offHeap         Whether the string bytes are stored off-heap.
+     */
+    Utf8StringArena(int initialCapacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        int capacity = Math.max(16, initialCapacity);
+        positions = new long[capacity];
+        hashes = new int[capacity];
+        refCounts = new int[capacity];
+        slots = new int[tableSize(capacity)];
+        chunks.add(allocateChunk());
+    }
+
+    /**
+     * Returns the ID of the string and adds a reference to it, appending it to the arena if it is not there yet.
+     *
+     * @param value The string to intern.
+     * @return The ID of the string.
+     */
+    int intern(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && bytesEqual(id, bytes)) {
+                refCounts[id]++;
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return append(bytes, hash, slot);
+    }
+
+    /**
+     * Drops a reference to the string. A string without references is removed from the lookup table, its ID
+     * is freed for reuse, and the chunks are compacted once dead bytes outnumber live ones.
+     *
+     * @param id The ID of the string.
+     */
+    void release(int id) {
+        if (--refCounts[id] > 0) {
+            return;
+        }
+        removeSlot(id);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        deadBytes += encodedLength(id);
+        if (deadBytes * 2 > usedBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the ID of the string if it is in the arena.
+     *
+     * @param value The string to look up.
+     * @return The ID of the string, or -1 if it is not in the arena.
+     */
+    int find(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && bytesEqual(id, bytes)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the string with the specified ID.
+     *
+     * @param id The ID of the string.
+     * @return The string.
+     */
+    String get(int id) {
+        ByteBuffer chunk = chunks.get((int) (positions[id] >>> CHUNK_BITS));
+        int offset = (int) (positions[id] & (CHUNK_SIZE - 1));
+        int length = readVarInt(chunk, offset);
+        offset += varIntLength(length);
+
+        byte[] bytes = new byte[length];
+        chunk.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of strings in the arena.
+     *
+     * @return The number of live strings.
+     */
+    int size() {
+        return count - freeCount;
+    }
+
+    /**
+     * Returns the upper bound of the IDs, which are all lower than it.
+     *
+     * @return The number of IDs allocated, free ones included.
+     */
+    int idLimit() {
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes of the strings without references, not reclaimed yet.
+     *
+     * @return The dead bytes.
+     */
+    long deadBytes() {
+        return deadBytes;
+    }
+
+    /**
+     * Returns the number of bytes allocated for the string bytes.
+     *
+     * @return The size of the chunks, in bytes.
+     */
+    long chunkBytes() {
+        return (long) chunks.size() * CHUNK_SIZE;
+    }
+
+    /**
+     * Returns the number of bytes allocated on the heap for the positions, hashes and lookup table.
+     *
+     * @return The size of the index arrays, in bytes.
+     */
+    long indexBytes() {
+        return (long) positions.length * Long.BYTES + (long) (hashes.length + refCounts.length) * Integer.BYTES
+                + (long) (slots.length + freeIds.length) * Integer.BYTES;
+    }
+
+    /**
+     * Appends new string bytes to the last chunk, opening a new chunk when the bytes do not fit.
+     * The string gets a free ID if there is one, with a single reference.
+     *
+     * @param bytes The UTF-8 bytes of the string.
+     * @param hash  The hash of the bytes.
+     * @param slot  The free slot of the lookup table found for the string.
+     * @return The ID of the appended string.
+     */
+    private int append(byte[] bytes, int hash, int slot) {
+        int encodedLength = varIntLength(bytes.length) + bytes.length;
+        if (encodedLength > CHUNK_SIZE) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes does not fit in an arena chunk");
+        }
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        if (chunk.remaining() < encodedLength) {
+            chunk = allocateChunk();
+            chunks.add(chunk);
+        }
+        long position = ((long) (chunks.size() - 1) << CHUNK_BITS) | chunk.position();
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            chunk.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        chunk.put((byte) length);
+        chunk.put(bytes);
+        usedBytes += encodedLength;
+
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                hashes = Arrays.copyOf(hashes, count * 2);
+                refCounts = Arrays.copyOf(refCounts, count * 2);
+            }
+            id = count++;
+        }
+        positions[id] = position;
+        hashes[id] = hash;
+        refCounts[id] = 1;
+        slots[slot] = id + 1;
+        if (slots.length < tableSize(size())) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Slides the live strings towards the start of the chunks, in position order, and releases the chunks
+     * left empty. A string never moves past its previous position, so the copy is done in place.
+     */
+    private void compact() {
+        int live = size();
+        long[] sortedPositions = new long[live];
+        for (int id = 0, i = 0; id < count; id++) {
+            if (refCounts[id] > 0) {
+                sortedPositions[i++] = positions[id];
+            }
+        }
+        Arrays.sort(sortedPositions);
+        int[] idsByPosition = new int[live];
+        for (int id = 0; id < count; id++) {
+            if (refCounts[id] > 0) {
+                idsByPosition[Arrays.binarySearch(sortedPositions, positions[id])] = id;
+            }
+        }
+
+        int chunkIndex = 0;
+        int offset = 0;
+        for (int id : idsByPosition) {
+            ByteBuffer source = chunks.get((int) (positions[id] >>> CHUNK_BITS));
+            int sourceOffset = (int) (positions[id] & (CHUNK_SIZE - 1));
+            int encodedLength = encodedLength(id);
+            if (offset + encodedLength > CHUNK_SIZE) {
+                chunkIndex++;
+                offset = 0;
+            }
+            byte[] encoded = new byte[encodedLength];
+            source.get(sourceOffset, encoded);
+            chunks.get(chunkIndex).put(offset, encoded);
+            positions[id] = ((long) chunkIndex << CHUNK_BITS) | offset;
+            offset += encodedLength;
+        }
+
+        chunks.subList(chunkIndex + 1, chunks.size()).clear();
+        chunks.get(chunkIndex).position(offset);
+        usedBytes -= deadBytes;
+        deadBytes = 0;
+    }
+
+    /**
+     * Returns the number of bytes of a stored string, its varint length included.
+     *
+     * @param id The ID of the string.
+     * @return The encoded length.
+     */
+    private int encodedLength(int id) {
+        ByteBuffer chunk = chunks.get((int) (positions[id] >>> CHUNK_BITS));
+        int length = readVarInt(chunk, (int) (positions[id] & (CHUNK_SIZE - 1)));
+        return varIntLength(length) + length;
+    }
+
+    /**
+     * Removes a string from the lookup table, shifting back the entries that follow it in its probe sequence.
+     *
+     * @param id The ID of the string.
+     */
+    private void removeSlot(int id) {
+        int mask = slots.length - 1;
+        int hole = hashes[id] & mask;
+        while (slots[hole] != id + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (slots[slot] == 0) {
+                break;
+            }
+            int home = hashes[slots[slot] - 1] & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    /**
+     * Compares the bytes of a stored string with other bytes.
+     *
+     * @param id    The ID of the stored string.
+     * @param bytes The bytes to compare with.
+     * @return True if the bytes are equal.
+     */
+    private boolean bytesEqual(int id, byte[] bytes) {
+        ByteBuffer chunk = chunks.get((int) (positions[id] >>> CHUNK_BITS));
+        int offset = (int) (positions[id] & (CHUNK_SIZE - 1));
+        int length = readVarInt(chunk, offset);
+        offset += varIntLength(length);
+
+        if (length != bytes.length) {
+            return false;
+        }
+        return chunk.slice(offset, length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Rebuilds the lookup table with twice as many slots.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            if (refCounts[id] == 0) {
+                continue;
+            }
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Allocates a chunk on the heap or off-heap.
+     *
+     * @return The new chunk.
+     */
+    private ByteBuffer allocateChunk() {
+        return offHeap ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the size of a lookup table keeping its load factor at most 0.75.
+     *
+     * @param entries The number of entries of the table.
+     * @return The power of two size of the table.
+     */
+    static int tableSize(int entries) {
+        long minimum = (long) entries * 4 / 3 + 1;
+        return (int) Math.max(16, Long.highestOneBit(minimum - 1) << 1);
+    }
+
+    /**
+     * Hashes bytes, spreading the bits so consecutive slots are not clustered.
+     *
+     * @param bytes The bytes to hash.
+     * @return The hash.
+     */
+    private static int hash(byte[] bytes) {
+        int hash = Arrays.hashCode(bytes) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @param chunk  The chunk to read from.
+     * @param offset The offset of the varint within the chunk.
+     * @return The decoded value.
+     */
+    private static int readVarInt(ByteBuffer chunk, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = chunk.get(offset++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Returns the number of bytes of a varint.
+     *
+     * @param value The non-negative value.
+     * @return The encoded length.
+     */
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,43 @@
+package ua.nrubantseva.api.users.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import ua.nrubantseva.api.users.converter.LocalDateEpochDaySerializer;
+
+import java.time.LocalDate;
+
+/**
+ * Configuration of the Jackson based binary response formats negotiated through the 'Accept' header.
+ * The CBOR and Smile converters write birth dates as epoch days, and ids as 16 raw bytes since both formats
+ * support binary values natively. Spring Boot registers these converters after the JSON one.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    /**
+     * Creates the converter writing CBOR responses.
+     *
+     * @return The CBOR message converter.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor()
+                .serializerByType(LocalDate.class, new LocalDateEpochDaySerializer())
+                .build());
+    }
+
+    /**
+     * Creates the converter writing Smile responses.
+     *
+     * @return The Smile message converter.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        return new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.smile()
+                .serializerByType(LocalDate.class, new LocalDateEpochDaySerializer())
+                .build());
+    }
+}
@@ -0,0 +1,88 @@
+package ua.nrubantseva.api.users.config;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserRepository;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Configuration of the Hibernate second-level cache, backed by an in-process Ehcache JCache manager.
+ * The caches are created programmatically, one per region, each bounded by its maximum number of entries,
+ * and Hibernate fails on startup if it needs a region that is not configured here.
+ * Region statistics are published by Spring Boot as 'hibernate.second.level.cache.*' and 'hibernate.query.cache.*'.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    /**
+     * Maximum number of users kept in the entity cache.
+     */
+    @Value("${user.cache.users.max-entries:10000}")
+    private long userMaxEntries;
+
+    /**
+     * Maximum number of range search results kept in the query cache.
+     */
+    @Value("${user.cache.users-by-birth-date.max-entries:1000}")
+    private long usersByBirthDateMaxEntries;
+
+    /**
+     * Maximum number of results of other cacheable queries.
+     */
+    @Value("${user.cache.default-query-results.max-entries:100}")
+    private long defaultQueryResultsMaxEntries;
+
+    /**
+     * Creates the cache manager holding the second-level cache regions. Each application context gets its own
+     * manager, so several contexts in the same JVM do not share cached entities.
+     *
+     * @return The JCache cache manager.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        var provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        var configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(User.CACHE_REGION, cacheConfiguration(userMaxEntries))
+                .withCache(UserRepository.USERS_BY_BIRTH_DATE_CACHE_REGION, cacheConfiguration(usersByBirthDateMaxEntries))
+                .withCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                        cacheConfiguration(defaultQueryResultsMaxEntries))
+                .withCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, cacheConfiguration(100))
+                .build();
+        return provider.getCacheManager(URI.create("urn:users-api:hibernate:" + UUID.randomUUID()), configuration);
+    }
+
+    /**
+     * Hands the cache manager over to Hibernate.
+     *
+     * @param hibernateCacheManager The cache manager holding the second-level cache regions.
+     * @return The customizer of the Hibernate properties.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    /**
+     * Creates the configuration of a heap cache region.
+     *
+     * @param maxEntries The maximum number of entries of the region.
+     * @return The configuration of the region.
+     */
+    private CacheConfigurationBuilder<Object, Object> cacheConfiguration(long maxEntries) {
+        return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(maxEntries));
+    }
+}
@@ -0,0 +1,47 @@
+package ua.nrubantseva.api.users.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ua.nrubantseva.api.users.converter.UserCompactHttpMessageConverter;
+import ua.nrubantseva.api.users.converter.UserRangeSearchResultHttpMessageConverter;
+import ua.nrubantseva.api.users.limiter.ConcurrencyLimitInterceptor;
+
+import java.util.List;
+
+/**
+ * Spring MVC configuration of the users API.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Interceptor applying per-endpoint admission control.
+     */
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    /**
+     * Registers the admission control interceptor for the users endpoints.
+     *
+     * @param registry The registry of interceptors.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor).addPathPatterns("/users", "/users/**");
+    }
+
+    /**
+     * Registers the compact format converter after the JSON one, so JSON stays the default for error responses,
+     * and the converter writing shared range search results, backed by all the other converters.
+     *
+     * @param converters The list of configured converters.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new UserCompactHttpMessageConverter());
+        converters.add(0, new UserRangeSearchResultHttpMessageConverter(List.copyOf(converters)));
+    }
+}
@@ -2,55 +2,123 @@ package ua.nrubantseva.api.users.controller;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ua.nrubantseva.api.users.coalescing.UserRangeSearchCoalescer;
+import ua.nrubantseva.api.users.converter.UserMediaTypes;
 import ua.nrubantseva.api.users.dto.UserBirthDateRangeFilter;
 import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.dto.UserRangeSearchResult;
+import ua.nrubantseva.api.users.dto.UserSearchRequest;
+import ua.nrubantseva.api.users.executor.WorkloadExecutors;
+import ua.nrubantseva.api.users.idempotency.UserCreationIdempotency;
 import ua.nrubantseva.api.users.model.User;
 import ua.nrubantseva.api.users.service.UserService;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller class for managing user-related operations through RESTful API.
  * Handles endpoints for creating, updating, retrieving, and deleting user information.
+ * Responses are JSON by default, binary representations are negotiated through the 'Accept' header.
+ * Endpoints run asynchronously on the executor of their workload class, scans or point operations,
+ * so slow scans do not hold the request threads needed by quick point operations.
  */
 @RestController
+@RequestMapping(produces = {MediaType.APPLICATION_JSON_VALUE, UserMediaTypes.APPLICATION_CBOR_VALUE,
+        UserMediaTypes.APPLICATION_SMILE_VALUE, UserMediaTypes.APPLICATION_USERS_COMPACT_VALUE})
 @RequiredArgsConstructor
 @Validated
 public class UserController {
 
+    /**
+     * Preference requesting asynchronous processing, as defined by RFC 7240.
+     */
+    private static final String RESPOND_ASYNC = "respond-async";
+
     /**
      * Service responsible for handling user-related business logic.
      */
     public final UserService userService;
 
+    /**
+     * Component collapsing concurrent identical range searches.
+     */
+    public final UserRangeSearchCoalescer userRangeSearchCoalescer;
+
+    /**
+     * Executors running the endpoints, one per workload class.
+     */
+    public final WorkloadExecutors workloadExecutors;
+
+    /**
+     * Component making user creations idempotent by their idempotency key.
+     */
+    public final UserCreationIdempotency userCreationIdempotency;
+
     /**
      * Retrieves a list of users within the specified birth date range.
+     * Concurrent requests for the same range share a single query and its serialized response.
      *
      * @param filter The filter containing the 'fromDate' and 'toDate' for the birth date range.
-     * @return A list of users matching the specified birth date range.
+     * @return The users matching the specified birth date range, written as a list.
      */
-    @GetMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(value = "/users")
     @ResponseStatus(HttpStatus.OK)
-    public List<User> findUserByRange(@Valid UserBirthDateRangeFilter filter) {
-        return userService.findByBirthDateRange(filter.getFromDate(), filter.getToDate());
+    public CompletableFuture<UserRangeSearchResult> findUserByRange(@Valid UserBirthDateRangeFilter filter) {
+        return userRangeSearchCoalescer.findByBirthDateRange(filter.getFromDate(), filter.getToDate());
+    }
+
+    /**
+     * Searches users whose first name, last name or email start with the terms of the query.
+     *
+     * @param request The request containing the query and the maximum number of results.
+     * @return A list of matching users, best match first.
+     */
+    @GetMapping(value = "/users/search")
+    @ResponseStatus(HttpStatus.OK)
+    public CompletableFuture<List<User>> searchUsers(@Valid UserSearchRequest request) {
+        return workloadExecutors.getScans().submit(() -> userService.search(request.getQ(), request.getLimit()));
+    }
+
+    /**
+     * Retrieves the user with the specified email.
+     *
+     * @param email The email of the user.
+     * @return The user with the specified email.
+     */
+    @GetMapping(value = "/users/by-email")
+    @ResponseStatus(HttpStatus.OK)
+    public CompletableFuture<User> findUserByEmail(@NotBlank @Email String email) {
+        return workloadExecutors.getPoints().submit(() -> userService.findByEmail(email));
     }
 
     /**
      * Creates a new user based on the provided user modification request.
+     * With an 'Idempotency-Key' header, a retry of the same request replays the created user instead of
+     * creating another one, and a retry arriving while the first request runs waits for it.
      *
+     * @param idempotencyKey          The idempotency key of the request, can be null.
      * @param userModificationRequest The request containing user information for creation.
      * @return The created user.
      */
-    @PostMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PostMapping(value = "/users")
     @ResponseStatus(HttpStatus.CREATED)
-    public User createUser(@Valid UserModificationRequest userModificationRequest) {
-        return userService.createUser(userModificationRequest);
+    public CompletableFuture<User> createUser(
+            @RequestHeader(name = UserCreationIdempotency.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid UserModificationRequest userModificationRequest) {
+        if (idempotencyKey == null) {
+            return workloadExecutors.getPoints().submit(() -> userService.createUser(userModificationRequest));
+        }
+        return userCreationIdempotency.createUser(idempotencyKey, userModificationRequest,
+                () -> workloadExecutors.getPoints().submit(() -> userService.createUser(userModificationRequest)));
     }
 
     /**
@@ -59,22 +127,38 @@ public class UserController {
      * @param userId                  The unique identifier of the user to be updated.
      * @param userModificationRequest The request containing updated user information.
      */
-    @PutMapping(value = "/users/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PutMapping(value = "/users/{userId}")
     @ResponseStatus(HttpStatus.OK)
-    public void updateUser(@PathVariable UUID userId, @Valid UserModificationRequest userModificationRequest) {
-        userService.updateUser(userId, userModificationRequest);
+    public CompletableFuture<Void> updateUser(@PathVariable UUID userId,
+                                              @Valid UserModificationRequest userModificationRequest) {
+        return workloadExecutors.getPoints().submit(() -> {
+            userService.updateUser(userId, userModificationRequest);
+            return null;
+        });
     }
 
     /**
      * Updates the email address of an existing user with the specified user ID.
+     * With the 'respond-async' preference in the 'Prefer' header, the update is queued and acknowledged with 202 (ACCEPTED),
+     * then written together with other queued updates.
      *
      * @param userId The unique identifier of the user to update the email address.
      * @param email  The new email address for the user.
+     * @param prefer The value of the 'Prefer' header, if any.
+     * @return An empty response with status 200 (OK), or 202 (ACCEPTED) when the update was queued.
      */
-    @PutMapping(value = "/users/{userId}/email", produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.OK)
-    public void updateUserEmail(@PathVariable UUID userId, @Email String email) {
-        userService.updateUserEmail(userId, email);
+    @PutMapping(value = "/users/{userId}/email")
+    public CompletableFuture<ResponseEntity<Void>> updateUserEmail(@PathVariable UUID userId, @Email String email,
+                                                                   @RequestHeader(value = "Prefer", required = false)
+                                                                   String prefer) {
+        return workloadExecutors.getPoints().submit(() -> {
+            if (isRespondAsyncPreferred(prefer) && userService.isAsyncEmailUpdateEnabled()) {
+                userService.updateUserEmailAsync(userId, email);
+                return ResponseEntity.accepted().<Void>build();
+            }
+            userService.updateUserEmail(userId, email);
+            return ResponseEntity.ok().<Void>build();
+        });
     }
 
     /**
@@ -82,10 +166,31 @@ public class UserController {
      *
      * @param userId The unique identifier of the user to be deleted.
      */
-    @DeleteMapping(value = "/users/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @DeleteMapping(value = "/users/{userId}")
     @ResponseStatus(HttpStatus.OK)
-    public void deleteUser(@PathVariable UUID userId) {
-        userService.deleteUserById(userId);
+    public CompletableFuture<Void> deleteUser(@PathVariable UUID userId) {
+        return workloadExecutors.getPoints().submit(() -> {
+            userService.deleteUserById(userId);
+            return null;
+        });
     }
 
+    /**
+     * Checks if the 'Prefer' header requests asynchronous processing. The header is a comma-separated list
+     * of preferences, each with optional parameters after a semicolon, such as 'respond-async, wait=10'.
+     *
+     * @param prefer The value of the 'Prefer' header, if any.
+     * @return True if one of the preferences is 'respond-async'.
+     */
+    private static boolean isRespondAsyncPreferred(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            if (RESPOND_ASYNC.equalsIgnoreCase(preference.split(";", 2)[0].trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
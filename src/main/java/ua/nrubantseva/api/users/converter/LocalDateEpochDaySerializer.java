@@ -0,0 +1,27 @@
+package ua.nrubantseva.api.users.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Jackson serializer writing a LocalDate as the number of days since 1970-01-01.
+ * Used by the binary formats, where an int is a fraction of the size of an ISO date string.
+ */
+public class LocalDateEpochDaySerializer extends StdSerializer<LocalDate> {
+
+    /**
+     * Constructs a new LocalDateEpochDaySerializer.
+     */
+    public LocalDateEpochDaySerializer() {
+        super(LocalDate.class);
+    }
+
+    @Override
+    public void serialize(LocalDate value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeNumber(Math.toIntExact(value.toEpochDay()));
+    }
+}
@@ -0,0 +1,160 @@
+package ua.nrubantseva.api.users.converter;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import ua.nrubantseva.api.users.exception.response.ErrorMessageResponse;
+import ua.nrubantseva.api.users.model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * HTTP message converter writing users and error responses in the compact 'application/vnd.users.compact' format.
+ * The format has a fixed schema, so no field names are transmitted. All numbers are big-endian.
+ * <pre>
+ * users    := varint(count) user*
+ * user     := int64(id msb) int64(id lsb) int32(birthDate epoch day)
+ *             string(email) string(firstName) string(lastName) nullable(address) nullable(phone)
+ * error    := string(error) string(path) string(method)
+ * string   := varint(byte length) utf8-bytes
+ * nullable := varint(0) for null, otherwise varint(byte length + 1) utf8-bytes
+ * varint   := unsigned LEB128
+ * </pre>
+ */
+public class UserCompactHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    /**
+     * Constructs a new UserCompactHttpMessageConverter.
+     */
+    public UserCompactHttpMessageConverter() {
+        super(UserMediaTypes.APPLICATION_USERS_COMPACT);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return User.class.isAssignableFrom(clazz)
+                || ErrorMessageResponse.class.equals(clazz)
+                || Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (type != null && Collection.class.isAssignableFrom(clazz)) {
+            Class<?> elementType = ResolvableType.forType(type).asCollection().resolveGeneric(0);
+            if (elementType == null || !User.class.isAssignableFrom(elementType)) {
+                return false;
+            }
+        }
+        return canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading the compact format is not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading the compact format is not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        var out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        if (body instanceof User user) {
+            writeUser(out, user);
+        } else if (body instanceof ErrorMessageResponse error) {
+            writeString(out, error.error());
+            writeString(out, error.path());
+            writeString(out, error.method());
+        } else {
+            Collection<?> users = (Collection<?>) body;
+            writeVarInt(out, users.size());
+            for (Object user : users) {
+                writeUser(out, (User) user);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a single user.
+     *
+     * @param out  The stream to write to.
+     * @param user The user to write.
+     * @throws IOException If writing fails.
+     */
+    private void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeLong(user.getId().getMostSignificantBits());
+        out.writeLong(user.getId().getLeastSignificantBits());
+        out.writeInt(Math.toIntExact(user.getBirthDate().toEpochDay()));
+        writeString(out, user.getEmail());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeNullableString(out, user.getAddress());
+        writeNullableString(out, user.getPhone());
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param out   The stream to write to.
+     * @param value The string to write.
+     * @throws IOException If writing fails.
+     */
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string that can be null, shifting the length by one to encode null as zero.
+     *
+     * @param out   The stream to write to.
+     * @param value The string to write, or null.
+     * @throws IOException If writing fails.
+     */
+    private void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a non-negative int as an unsigned LEB128 varint.
+     *
+     * @param out   The stream to write to.
+     * @param value The value to write.
+     * @throws IOException If writing fails.
+     */
+    private void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,33 @@
+package ua.nrubantseva.api.users.converter;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types the users API can respond with, negotiated through the 'Accept' header.
+ * JSON stays the default, the binary types are meant for internal service-to-service callers.
+ */
+public final class UserMediaTypes {
+
+    /**
+     * CBOR representation, with birth dates as epoch days and ids as 16 raw bytes.
+     */
+    public static final String APPLICATION_CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+
+    /**
+     * Smile representation, with birth dates as epoch days and ids as 16 raw bytes.
+     */
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * Schema-based compact representation written by UserCompactHttpMessageConverter.
+     */
+    public static final String APPLICATION_USERS_COMPACT_VALUE = "application/vnd.users.compact";
+
+    /**
+     * Schema-based compact representation written by UserCompactHttpMessageConverter.
+     */
+    public static final MediaType APPLICATION_USERS_COMPACT = MediaType.valueOf(APPLICATION_USERS_COMPACT_VALUE);
+
+    private UserMediaTypes() {
+    }
+}
@@ -0,0 +1,144 @@
+package ua.nrubantseva.api.users.converter;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import ua.nrubantseva.api.users.dto.UserRangeSearchResult;
+import ua.nrubantseva.api.users.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * HTTP message converter writing UserRangeSearchResult responses.
+ * The users are serialized by the first delegate converter able to write a List of User in the negotiated
+ * media type, and the produced bytes are cached in the result so that coalesced requests reuse them.
+ */
+public class UserRangeSearchResultHttpMessageConverter extends AbstractHttpMessageConverter<UserRangeSearchResult> {
+
+    /**
+     * Generic type of the serialized users.
+     */
+    private static final Type USER_LIST_TYPE = new ParameterizedTypeReference<List<User>>() {
+    }.getType();
+
+    /**
+     * Converters used to serialize the users.
+     */
+    private final List<GenericHttpMessageConverter<Object>> delegates;
+
+    /**
+     * Constructs a new UserRangeSearchResultHttpMessageConverter supporting the media types of its delegates.
+     *
+     * @param converters The registered converters, of which those able to write a List of User are used as delegates.
+     */
+    @SuppressWarnings("unchecked")
+    public UserRangeSearchResultHttpMessageConverter(List<HttpMessageConverter<?>> converters) {
+        this.delegates = converters.stream()
+                .filter(GenericHttpMessageConverter.class::isInstance)
+                .map(converter -> (GenericHttpMessageConverter<Object>) converter)
+                .filter(converter -> converter.canWrite(USER_LIST_TYPE, List.class, null))
+                .toList();
+
+        Set<MediaType> mediaTypes = new LinkedHashSet<>();
+        delegates.forEach(delegate -> mediaTypes.addAll(delegate.getSupportedMediaTypes(List.class)));
+        setSupportedMediaTypes(List.copyOf(mediaTypes));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return UserRangeSearchResult.class.equals(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected UserRangeSearchResult readInternal(Class<? extends UserRangeSearchResult> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading " + clazz.getSimpleName() + " is not supported", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(UserRangeSearchResult result, MediaType contentType) {
+        return (long) encode(result, contentType).length;
+    }
+
+    @Override
+    protected void writeInternal(UserRangeSearchResult result, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(encode(result, outputMessage.getHeaders().getContentType()));
+    }
+
+    /**
+     * Returns the users of the result serialized for the specified media type.
+     *
+     * @param result    The range search result.
+     * @param mediaType The media type of the response.
+     * @return The serialized users.
+     */
+    private byte[] encode(UserRangeSearchResult result, MediaType mediaType) {
+        try {
+            return result.getEncoded(mediaType, type -> serialize(result.getUsers(), type));
+        } catch (UncheckedIOException e) {
+            throw new HttpMessageNotWritableException("Could not write users as " + mediaType, e.getCause());
+        }
+    }
+
+    /**
+     * Serializes the users with the first delegate supporting the media type.
+     *
+     * @param users     The users to serialize.
+     * @param mediaType The media type of the response.
+     * @return The serialized users.
+     */
+    private byte[] serialize(List<User> users, MediaType mediaType) {
+        GenericHttpMessageConverter<Object> delegate = delegates.stream()
+                .filter(converter -> converter.canWrite(USER_LIST_TYPE, List.class, mediaType))
+                .findFirst()
+                .orElseThrow(() -> new HttpMessageNotWritableException("No converter writes users as " + mediaType));
+
+        var buffer = new ByteArrayOutputStream();
+        try {
+            delegate.write(users, USER_LIST_TYPE, mediaType, new BufferedOutputMessage(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Output message writing into an in-memory buffer.
+     *
+     * @param body The buffer receiving the body.
+     */
+    private record BufferedOutputMessage(OutputStream body, HttpHeaders headers) implements HttpOutputMessage {
+
+        private BufferedOutputMessage(OutputStream body) {
+            this(body, new HttpHeaders());
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ua.nrubantseva.api.users.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import ua.nrubantseva.api.users.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Result of a birth date range search that can be shared between coalesced requests.
+ * Besides the found users it keeps their serialized form per media type, so the response body
+ * is encoded once no matter how many requests share the result.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserRangeSearchResult {
+
+    /**
+     * Users whose birth dates fall within the searched range.
+     */
+    private final List<User> users;
+
+    /**
+     * Serialized users by media type.
+     */
+    private final Map<MediaType, byte[]> encoded = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the users serialized for the specified media type, encoding them on first use.
+     *
+     * @param mediaType The media type of the response.
+     * @param encoder   The function serializing the users for the media type.
+     * @return The serialized users.
+     */
+    public byte[] getEncoded(MediaType mediaType, Function<MediaType, byte[]> encoder) {
+        return encoded.computeIfAbsent(mediaType, encoder);
+    }
+}
@@ -0,0 +1,32 @@
+package ua.nrubantseva.api.users.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object (DTO) representing a prefix search over the names and emails of the users.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class UserSearchRequest {
+
+    /**
+     * The search query. Every whitespace separated term must be a prefix of the first name, last name or email.
+     */
+    @NotBlank
+    @Size(max = 100)
+    private String q;
+
+    /**
+     * The maximum number of users to return. Defaults to 20.
+     */
+    @Min(1)
+    @Max(100)
+    private int limit = 20;
+}
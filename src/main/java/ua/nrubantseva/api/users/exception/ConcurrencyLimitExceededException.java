@@ -0,0 +1,30 @@
+package ua.nrubantseva.api.users.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom runtime exception indicating that a request was rejected because the server is overloaded.
+ * It is annotated with @ResponseStatus to automatically set the HTTP response status code to 503 (SERVICE_UNAVAILABLE).
+ */
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    /**
+     * Number of seconds the client should wait before retrying.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new ConcurrencyLimitExceededException with the specified error message.
+     *
+     * @param message           The error message describing the exception.
+     * @param retryAfterSeconds The number of seconds the client should wait before retrying.
+     */
+    public ConcurrencyLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
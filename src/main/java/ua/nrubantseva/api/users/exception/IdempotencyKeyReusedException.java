@@ -0,0 +1,21 @@
+package ua.nrubantseva.api.users.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom runtime exception indicating that an idempotency key was reused for a different request.
+ * It is annotated with @ResponseStatus to automatically set the HTTP response status code to 422 (UNPROCESSABLE_ENTITY).
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    /**
+     * Constructs a new IdempotencyKeyReusedException with the specified error message.
+     *
+     * @param message The error message describing the exception.
+     */
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
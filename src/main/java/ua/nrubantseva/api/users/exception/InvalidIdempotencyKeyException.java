@@ -0,0 +1,21 @@
+package ua.nrubantseva.api.users.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom runtime exception indicating that an idempotency key is blank or too long.
+ * It is annotated with @ResponseStatus to automatically set the HTTP response status code to 400 (BAD_REQUEST).
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    /**
+     * Constructs a new InvalidIdempotencyKeyException with the specified error message.
+     *
+     * @param message The error message describing the exception.
+     */
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
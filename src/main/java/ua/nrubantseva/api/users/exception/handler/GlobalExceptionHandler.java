@@ -1,19 +1,28 @@
 package ua.nrubantseva.api.users.exception.handler;
 
 import jakarta.persistence.EntityNotFoundException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.ServletWebRequest;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+import ua.nrubantseva.api.users.exception.IdempotencyKeyReusedException;
+import ua.nrubantseva.api.users.exception.InvalidIdempotencyKeyException;
 import ua.nrubantseva.api.users.exception.UserAgeRestrictionException;
 import ua.nrubantseva.api.users.exception.response.ErrorMessageResponse;
+import ua.nrubantseva.api.users.model.User;
+
+import java.util.Locale;
 
 /**
  * Global exception handler for handling specific exceptions thrown in the application.
- * It provides standardized error responses for different types of exceptions.
+ * It provides standardized error responses for different types of exceptions,
+ * written in the media type negotiated for the request.
  */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -30,23 +39,82 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ErrorMessageResponse> handleNotFoundExceptions(Exception e, ServletWebRequest request) {
         return ResponseEntity
                 .status(HttpStatus.NOT_FOUND)
-                .contentType(MediaType.APPLICATION_JSON)
                 .body(logAndGetErrorMessage(request, e.getLocalizedMessage(), e));
     }
 
     /**
-     * Handles exceptions of type UserAgeRestrictionException.
+     * Handles exceptions of type UserAgeRestrictionException and InvalidIdempotencyKeyException.
      *
-     * @param e       The UserAgeRestrictionException instance.
+     * @param e       The UserAgeRestrictionException or InvalidIdempotencyKeyException instance.
      * @param request The ServletWebRequest containing information about the request.
      * @return An ErrorMessageResponse for the bad request exception.
      */
-    @ExceptionHandler(UserAgeRestrictionException.class)
+    @ExceptionHandler({UserAgeRestrictionException.class, InvalidIdempotencyKeyException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorMessageResponse handleBadRequestException(RuntimeException e, ServletWebRequest request) {
         return logAndGetErrorMessage(request, e.getLocalizedMessage(), e);
     }
 
+    /**
+     * Handles exceptions of type IdempotencyKeyReusedException.
+     *
+     * @param e       The IdempotencyKeyReusedException instance.
+     * @param request The ServletWebRequest containing information about the request.
+     * @return An ErrorMessageResponse for the reused idempotency key.
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public ErrorMessageResponse handleUnprocessableEntityException(IdempotencyKeyReusedException e,
+                                                                   ServletWebRequest request) {
+        return logAndGetErrorMessage(request, e.getLocalizedMessage(), e);
+    }
+
+    /**
+     * Handles exceptions of type DataIntegrityViolationException, raised when a write violates a database constraint
+     * such as the unique email index.
+     *
+     * @param e       The DataIntegrityViolationException instance.
+     * @param request The ServletWebRequest containing information about the request.
+     * @return An ErrorMessageResponse for the conflict.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorMessageResponse handleConflictException(DataIntegrityViolationException e, ServletWebRequest request) {
+        String message = isEmailUniqueConstraintViolation(e)
+                ? "user with this email already exists"
+                : "user conflicts with existing data";
+        return logAndGetErrorMessage(request, message, e);
+    }
+
+    /**
+     * Handles exceptions of type ConcurrencyLimitExceededException.
+     *
+     * @param e       The ConcurrencyLimitExceededException instance.
+     * @param request The ServletWebRequest containing information about the request.
+     * @return A ResponseEntity containing an ErrorMessageResponse and a Retry-After header for the rejected request.
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorMessageResponse> handleServiceUnavailableException(ConcurrencyLimitExceededException e,
+                                                                                  ServletWebRequest request) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(logAndGetErrorMessage(request, e.getLocalizedMessage(), e));
+    }
+
+    /**
+     * Checks if the exception was caused by the unique constraint on the user email.
+     *
+     * @param e The DataIntegrityViolationException instance.
+     * @return True if the unique email constraint was violated.
+     */
+    private boolean isEmailUniqueConstraintViolation(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && violation.getConstraintName() != null
+                && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(User.EMAIL_UNIQUE_CONSTRAINT);
+    }
+
     /**
      * Generates an ErrorMessageResponse based on the exception, request path, and HTTP method.
      *
@@ -0,0 +1,175 @@
+package ua.nrubantseva.api.users.executor;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor running one class of request workload off the request threads.
+ * It has a fixed number of threads and a bounded queue: a task submitted while the queue is full is rejected
+ * immediately, and a task that has not started within the queue timeout fails and is removed from the queue,
+ * so callers are told to retry instead of piling up. A task that has started always runs to completion and
+ * its caller gets its result: it is not interrupted, since interrupting JDBC I/O can close the database,
+ * and failing it while its writes still commit would make a retry repeat them.
+ */
+public class WorkloadExecutor {
+
+    /**
+     * Name of the workload, used in thread names, metrics and error messages.
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * Maximum time a task may wait in the queue before it starts, in milliseconds.
+     */
+    @Getter
+    private final long queueTimeoutMillis;
+
+    /**
+     * Number of seconds a rejected caller is told to wait before retrying.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Pool running the tasks.
+     */
+    @Getter
+    private final ThreadPoolExecutor threadPool;
+
+    /**
+     * Scheduler failing the tasks that exceed the queue timeout.
+     */
+    private final ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * Timer recording how long tasks wait in the queue before they start.
+     */
+    private final Timer queueWaitTimer;
+
+    /**
+     * Number of tasks rejected because the queue was full.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Number of tasks that did not start within the queue timeout.
+     */
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Constructs a new WorkloadExecutor.
+     *
+     * @param name               The name of the workload.
+     * @param threads            The number of threads.
+     * @param queueCapacity      The maximum number of tasks waiting for a thread.
+     * @param queueTimeoutMillis The maximum time a task may wait in the queue before it starts.
+     * @param retryAfterSeconds  The number of seconds a rejected caller is told to wait before retrying.
+     * @param timeoutScheduler   The scheduler failing the tasks that exceed the queue timeout.
+     * @param queueWaitTimer     The timer recording how long tasks wait in the queue.
+     */
+    public WorkloadExecutor(String name, int threads, int queueCapacity, long queueTimeoutMillis,
+                            long retryAfterSeconds, ScheduledExecutorService timeoutScheduler, Timer queueWaitTimer) {
+        this.name = name;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.timeoutScheduler = timeoutScheduler;
+        this.queueWaitTimer = queueWaitTimer;
+
+        var threadNumber = new AtomicInteger();
+        this.threadPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "users-" + name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a task.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the task result.
+     * @return A future completed with the result of the task, or with a ConcurrencyLimitExceededException
+     * if the task did not start within the queue timeout, in which case it never runs.
+     * @throws ConcurrencyLimitExceededException If the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        var result = new CompletableFuture<T>();
+        var claimed = new AtomicBoolean();
+        long submittedNanos = System.nanoTime();
+        Runnable runnable = () -> {
+            queueWaitTimer.record(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result.complete(task.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+
+        try {
+            threadPool.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ConcurrencyLimitExceededException("The " + name + " workload is saturated, try again later",
+                    retryAfterSeconds);
+        }
+
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                timedOut.incrementAndGet();
+                threadPool.remove(runnable);
+                result.completeExceptionally(new ConcurrencyLimitExceededException(
+                        "The " + name + " workload did not start the request in time, try again later",
+                        retryAfterSeconds));
+            }
+        }, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, e) -> timeout.cancel(false));
+        return result;
+    }
+
+    /**
+     * Stops accepting tasks and waits for the submitted ones to complete.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        threadPool.shutdown();
+        threadPool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the number of tasks rejected because the queue was full.
+     *
+     * @return The number of rejected tasks.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of tasks that did not start within the queue timeout.
+     *
+     * @return The number of timed out tasks.
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+}
@@ -0,0 +1,117 @@
+package ua.nrubantseva.api.users.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors running the controller endpoints off the request threads, one per workload class, so expensive
+ * scans cannot take the threads of quick point operations. Each executor is configured with the
+ * 'user.executor.{workload}.*' properties, and its saturation is published as the 'executor.*' metrics
+ * tagged with 'name=users.{workload}', plus its queue wait time, rejections and timeouts.
+ */
+@Component
+public class WorkloadExecutors {
+
+    /**
+     * Prefix of the executor properties.
+     */
+    private static final String PROPERTY_PREFIX = "user.executor.";
+
+    /**
+     * Executor for scans over many users: range searches and prefix searches.
+     */
+    @Getter
+    private final WorkloadExecutor scans;
+
+    /**
+     * Executor for point operations on a single user: lookups by email, creations, updates and deletions.
+     */
+    @Getter
+    private final WorkloadExecutor points;
+
+    /**
+     * Scheduler failing the tasks of both executors that exceed their queue timeout.
+     */
+    private final ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * Constructs the executors and publishes their metrics.
+     *
+     * @param environment   The environment used to resolve the executor properties.
+     * @param meterRegistry The registry the executor metrics are published to.
+     */
+    public WorkloadExecutors(Environment environment, MeterRegistry meterRegistry) {
+        var scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "users-executor-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timeoutScheduler = scheduler;
+
+        long retryAfterSeconds = environment.getProperty("user.limiter.retry-after-seconds", Long.class, 1L);
+        this.scans = createExecutor("scan", 4, 50, 10_000, retryAfterSeconds, environment, meterRegistry);
+        this.points = createExecutor("point", 16, 500, 2_000, retryAfterSeconds, environment, meterRegistry);
+    }
+
+    /**
+     * Stops the executors, letting the submitted tasks complete.
+     *
+     * @throws InterruptedException If interrupted while waiting for the tasks.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scans.shutdown(30, TimeUnit.SECONDS);
+        points.shutdown(30, TimeUnit.SECONDS);
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * Creates the executor of a workload and registers its metrics.
+     *
+     * @param workload             The name of the workload.
+     * @param defaultThreads       The number of threads used when the property is not set.
+     * @param defaultQueueCapacity The queue capacity used when the property is not set.
+     * @param defaultTimeoutMillis The queue timeout used when the property is not set.
+     * @param retryAfterSeconds    The number of seconds a rejected caller is told to wait before retrying.
+     * @param environment          The environment used to resolve the executor properties.
+     * @param meterRegistry        The registry the executor metrics are published to.
+     * @return The created executor.
+     */
+    private WorkloadExecutor createExecutor(String workload, int defaultThreads, int defaultQueueCapacity,
+                                            long defaultTimeoutMillis, long retryAfterSeconds,
+                                            Environment environment, MeterRegistry meterRegistry) {
+        String prefix = PROPERTY_PREFIX + workload + ".";
+        Timer queueWaitTimer = Timer.builder("users.executor.queue.wait")
+                .tag("executor", workload)
+                .description("Time tasks waited for a thread of the executor")
+                .register(meterRegistry);
+        var executor = new WorkloadExecutor(workload,
+                environment.getProperty(prefix + "threads", Integer.class, defaultThreads),
+                environment.getProperty(prefix + "queue-capacity", Integer.class, defaultQueueCapacity),
+                environment.getProperty(prefix + "queue-timeout-ms", Long.class, defaultTimeoutMillis),
+                retryAfterSeconds, timeoutScheduler, queueWaitTimer);
+
+        new ExecutorServiceMetrics(executor.getThreadPool(), "users." + workload, Tags.empty()).bindTo(meterRegistry);
+        FunctionCounter.builder("users.executor.rejected", executor, WorkloadExecutor::getRejected)
+                .tag("executor", workload)
+                .description("Tasks rejected because the queue of the executor was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.executor.timed.out", executor, WorkloadExecutor::getTimedOut)
+                .tag("executor", workload)
+                .description("Tasks that did not start within the queue timeout of the executor")
+                .register(meterRegistry);
+        return executor;
+    }
+}
@@ -0,0 +1,224 @@
+package ua.nrubantseva.api.users.idempotency;
+
+import ua.nrubantseva.api.users.exception.IdempotencyKeyReusedException;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded store of the results of idempotent operations by idempotency key.
+ * The first call with a key runs the operation, calls with the same key arriving while it runs share its future,
+ * and calls arriving after it succeeded replay its result until the entry expires. A failed operation is forgotten,
+ * so a retry with the same key runs it again. The entry follows the future returned by the operation, so that future
+ * must complete only once the operation is over, and fail only if the operation made no change: a future failed
+ * by a timeout while the operation still runs would let a retry run it twice. Every call gets its own copy of the
+ * shared future, so cancelling it or timing it out does not affect the other calls. Entries expire a fixed time
+ * after they were created, and the oldest completed entries are evicted when the store is full. Entries of running
+ * operations are never dropped, so the store may exceed its capacity by the number of operations in flight.
+ *
+ * @param <V> The type of the results.
+ */
+public class IdempotencyStore<V> {
+
+    /**
+     * Maximum number of keys kept.
+     */
+    private final int maxEntries;
+
+    /**
+     * Time an entry is kept after it was created, in nanoseconds.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Clock used to expire the entries, in nanoseconds.
+     */
+    private final LongSupplier nanoClock;
+
+    /**
+     * Entries by key, oldest first. Guarded by this store.
+     */
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>();
+
+    /**
+     * Number of calls that ran the operation.
+     */
+    private final AtomicLong executed = new AtomicLong();
+
+    /**
+     * Number of calls that waited for the operation of a concurrent call with the same key.
+     */
+    private final AtomicLong awaited = new AtomicLong();
+
+    /**
+     * Number of calls that replayed the result of a completed operation.
+     */
+    private final AtomicLong replayed = new AtomicLong();
+
+    /**
+     * Number of entries evicted before they expired because the store was full.
+     */
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Constructs a new IdempotencyStore.
+     *
+     * @param maxEntries The maximum number of keys kept.
+     * @param ttl        The time an entry is kept after it was created.
+     * @param nanoClock  The clock used to expire the entries, in nanoseconds.
+     */
+    public IdempotencyStore(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs the operation once per key, returning the future of the first call for calls with the same key.
+     *
+     * @param key         The idempotency key.
+     * @param fingerprint The value identifying the request, equal for retries of the same request.
+     * @param operation   The operation, which may complete its future asynchronously, failing it only if it made
+     *                    no change.
+     * @return The future of the operation run for the key.
+     * @throws IdempotencyKeyReusedException If the key was used for a request with a different fingerprint.
+     */
+    public CompletableFuture<V> execute(String key, Object fingerprint, Supplier<CompletableFuture<V>> operation) {
+        var own = new Entry<V>(fingerprint, nanoClock.getAsLong(), new CompletableFuture<>());
+        Entry<V> existing = putIfAbsent(key, own);
+        if (existing != null) {
+            if (!Objects.equals(existing.fingerprint(), fingerprint)) {
+                throw new IdempotencyKeyReusedException(
+                        "Idempotency key " + key + " was already used for a different request");
+            }
+            (existing.result().isDone() ? replayed : awaited).incrementAndGet();
+            return existing.result().copy();
+        }
+
+        executed.incrementAndGet();
+        CompletableFuture<V> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException | Error e) {
+            remove(key, own);
+            own.result().completeExceptionally(e);
+            throw e;
+        }
+        result.whenComplete((value, e) -> {
+            if (e != null) {
+                remove(key, own);
+                own.result().completeExceptionally(e);
+            } else {
+                own.result().complete(value);
+            }
+        });
+        return own.result().copy();
+    }
+
+    /**
+     * Returns the number of keys kept, including expired ones not evicted yet.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of calls that ran the operation.
+     *
+     * @return The number of executed calls.
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * Returns the number of calls that waited for the operation of a concurrent call with the same key.
+     *
+     * @return The number of awaited calls.
+     */
+    public long getAwaited() {
+        return awaited.get();
+    }
+
+    /**
+     * Returns the number of calls that replayed the result of a completed operation.
+     *
+     * @return The number of replayed calls.
+     */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * Returns the number of entries evicted before they expired because the store was full.
+     *
+     * @return The number of evicted entries.
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Adds the entry unless an unexpired entry exists for the key, first dropping the expired entries
+     * and making room by evicting the oldest ones. Entries of running operations are skipped by both.
+     *
+     * @param key   The idempotency key.
+     * @param entry The entry to add.
+     * @return The existing entry, or null if the entry was added.
+     */
+    private synchronized Entry<V> putIfAbsent(String key, Entry<V> entry) {
+        Iterator<Entry<V>> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            Entry<V> candidate = oldest.next();
+            if (entry.createdNanos() - candidate.createdNanos() < ttlNanos) {
+                break;
+            }
+            if (candidate.result().isDone()) {
+                oldest.remove();
+            }
+        }
+
+        Entry<V> existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        oldest = entries.values().iterator();
+        while (entries.size() >= maxEntries && oldest.hasNext()) {
+            if (oldest.next().result().isDone()) {
+                oldest.remove();
+                evicted.incrementAndGet();
+            }
+        }
+        entries.put(key, entry);
+        return null;
+    }
+
+    /**
+     * Removes the entry of a failed operation, unless it was already replaced.
+     *
+     * @param key   The idempotency key.
+     * @param entry The entry to remove.
+     */
+    private synchronized void remove(String key, Entry<V> entry) {
+        entries.remove(key, entry);
+    }
+
+    /**
+     * Operation run for an idempotency key.
+     *
+     * @param fingerprint  The value identifying the request that ran the operation.
+     * @param createdNanos The time the entry was created, in nanoseconds.
+     * @param result       The future of the operation, shared by the calls with the same key.
+     * @param <V>          The type of the result.
+     */
+    private record Entry<V>(Object fingerprint, long createdNanos, CompletableFuture<V> result) {
+    }
+}
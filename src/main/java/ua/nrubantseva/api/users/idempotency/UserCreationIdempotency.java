@@ -0,0 +1,104 @@
+package ua.nrubantseva.api.users.idempotency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.exception.InvalidIdempotencyKeyException;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Component making user creations idempotent by the 'Idempotency-Key' request header.
+ * A retried creation with the same key and the same attributes replays the created user without touching
+ * the database, and a retry arriving while the first creation runs waits for it instead of inserting again.
+ * Keys are kept in memory for 'user.idempotency.ttl-seconds', at most 'user.idempotency.max-entries' of them.
+ */
+@Component
+public class UserCreationIdempotency {
+
+    /**
+     * Name of the request header carrying the idempotency key.
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Maximum length of an idempotency key, bounding the memory held by each key.
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    /**
+     * Created users by idempotency key.
+     */
+    private final IdempotencyStore<User> store;
+
+    /**
+     * Constructs a new UserCreationIdempotency and publishes its counters as metrics.
+     *
+     * @param environment   The environment used to resolve the store properties.
+     * @param meterRegistry The registry the idempotency metrics are published to.
+     */
+    public UserCreationIdempotency(Environment environment, MeterRegistry meterRegistry) {
+        this.store = new IdempotencyStore<>(
+                environment.getProperty("user.idempotency.max-entries", Integer.class, 10_000),
+                Duration.ofSeconds(environment.getProperty("user.idempotency.ttl-seconds", Long.class, 86_400L)),
+                System::nanoTime);
+
+        FunctionCounter.builder("users.idempotency.requests", store, IdempotencyStore::getExecuted)
+                .tag("outcome", "executed")
+                .description("User creations with an idempotency key that inserted a user")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.idempotency.requests", store, IdempotencyStore::getAwaited)
+                .tag("outcome", "awaited")
+                .description("User creations that waited for a concurrent creation with the same idempotency key")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.idempotency.requests", store, IdempotencyStore::getReplayed)
+                .tag("outcome", "replayed")
+                .description("User creations that replayed a completed creation with the same idempotency key")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.idempotency.evicted", store, IdempotencyStore::getEvicted)
+                .description("Idempotency keys evicted before they expired because the store was full")
+                .register(meterRegistry);
+        Gauge.builder("users.idempotency.entries", store, IdempotencyStore::size)
+                .description("Idempotency keys kept in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a user once per idempotency key.
+     *
+     * @param key      The idempotency key.
+     * @param request  The request containing user information for creation.
+     * @param creation The creation of the user, run unless the key was already used. Its future completes with the
+     *                 outcome of the insert: the points executor only fails a creation that never started,
+     *                 so a key is forgotten only when no user was inserted for it.
+     * @return The future of the user created for the key.
+     * @throws InvalidIdempotencyKeyException If the key is blank or too long.
+     */
+    public CompletableFuture<User> createUser(String key, UserModificationRequest request,
+                                              Supplier<CompletableFuture<User>> creation) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    IDEMPOTENCY_KEY_HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        return store.execute(key, fingerprint(request), creation);
+    }
+
+    /**
+     * Returns the value identifying the attributes of a creation request.
+     *
+     * @param request The request containing user information for creation.
+     * @return A list of the request attributes, equal for equal requests.
+     */
+    private static List<Object> fingerprint(UserModificationRequest request) {
+        return Arrays.asList(request.getEmail(), request.getFirstName(), request.getLastName(),
+                request.getBirthDate(), request.getAddress(), request.getPhone());
+    }
+}
@@ -0,0 +1,142 @@
+package ua.nrubantseva.api.users.limiter;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limiter that adapts its limit using the AIMD (additive increase, multiplicative decrease) algorithm.
+ * The limit grows by one after every request that completed faster than the latency threshold while the limiter
+ * was at least half utilized, and is multiplied by the backoff ratio after every request that was slower.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Name of the endpoint guarded by this limiter.
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * Lower bound for the concurrency limit.
+     */
+    private final int minLimit;
+
+    /**
+     * Upper bound for the concurrency limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * Latency above which a request is considered a sign of overload.
+     */
+    private final long latencyThresholdNanos;
+
+    /**
+     * Ratio applied to the limit when a request exceeds the latency threshold.
+     */
+    private final double backoffRatio;
+
+    /**
+     * Current concurrency limit.
+     */
+    private volatile int limit;
+
+    /**
+     * Number of requests currently holding a permit.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Number of requests rejected because the limit was reached.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Constructs a new AdaptiveConcurrencyLimiter.
+     *
+     * @param name                  The name of the guarded endpoint.
+     * @param initialLimit          The initial concurrency limit.
+     * @param minLimit              The lower bound for the concurrency limit.
+     * @param maxLimit              The upper bound for the concurrency limit.
+     * @param latencyThresholdNanos The latency above which the limit is decreased.
+     * @param backoffRatio          The ratio applied to the limit on decrease, between 0 and 1.
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      long latencyThresholdNanos, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limiter " + name + " has invalid bounds [" + minLimit + ", " + maxLimit + "]");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Limiter " + name + " backoff ratio must be between 0 and 1");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    }
+
+    /**
+     * Tries to acquire a permit without waiting.
+     *
+     * @return True if the permit was acquired, false if the limit is reached.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a previously acquired permit and adjusts the limit based on the observed latency.
+     *
+     * @param latencyNanos The time the request held the permit.
+     */
+    public void release(long latencyNanos) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+            } else if (inFlightBeforeRelease * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of requests currently holding a permit.
+     *
+     * @return The number of in-flight requests.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the total number of rejected requests.
+     *
+     * @return The number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
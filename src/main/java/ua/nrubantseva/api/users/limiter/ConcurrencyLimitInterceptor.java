@@ -0,0 +1,80 @@
+package ua.nrubantseva.api.users.limiter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+
+/**
+ * Interceptor applying admission control to controller endpoints.
+ * Each handler method is guarded by its own adaptive limiter, so a burst of expensive requests
+ * to one endpoint is rejected early instead of slowing down every other endpoint.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    /**
+     * Request attribute holding the permit acquired for the request.
+     */
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    /**
+     * Registry providing the limiter of each endpoint.
+     */
+    private final ConcurrencyLimiterRegistry limiterRegistry;
+
+    /**
+     * Acquires a permit from the limiter of the handled endpoint.
+     *
+     * @param request  The current request.
+     * @param response The current response.
+     * @param handler  The handler chosen for the request.
+     * @return True if the request is admitted.
+     * @throws ConcurrencyLimitExceededException If the endpoint is at its concurrency limit.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)
+                || !limiterRegistry.isEnabled()
+                || request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+
+        AdaptiveConcurrencyLimiter limiter = limiterRegistry.getLimiter(handlerMethod.getMethod().getName());
+        if (!limiter.tryAcquire()) {
+            throw new ConcurrencyLimitExceededException("Endpoint " + limiter.getName()
+                    + " is overloaded, try again later", limiterRegistry.getRetryAfterSeconds());
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, new Permit(limiter, System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Releases the permit held by the request, reporting its latency to the limiter.
+     *
+     * @param request  The current request.
+     * @param response The current response.
+     * @param handler  The handler chosen for the request.
+     * @param ex       The exception thrown by the handler, if any.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permit.limiter().release(System.nanoTime() - permit.startNanos());
+        }
+    }
+
+    /**
+     * A permit acquired by a request.
+     *
+     * @param limiter    The limiter the permit was acquired from.
+     * @param startNanos The time the permit was acquired.
+     */
+    private record Permit(AdaptiveConcurrencyLimiter limiter, long startNanos) {
+    }
+}
@@ -0,0 +1,114 @@
+package ua.nrubantseva.api.users.limiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry holding one adaptive concurrency limiter per endpoint.
+ * Limiters are created lazily from the 'user.limiter.*' properties, which can be overridden per endpoint
+ * with 'user.limiter.endpoints.{endpoint}.*', and their state is published as metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConcurrencyLimiterRegistry {
+
+    /**
+     * Prefix of the limiter properties.
+     */
+    private static final String PROPERTY_PREFIX = "user.limiter.";
+
+    /**
+     * Environment used to resolve the limiter properties.
+     */
+    private final Environment environment;
+
+    /**
+     * Registry the limiter metrics are published to.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Limiters by endpoint name.
+     */
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the limiter for the specified endpoint, creating it on first use.
+     *
+     * @param endpoint The name of the endpoint.
+     * @return The limiter guarding the endpoint.
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String endpoint) {
+        return limiters.computeIfAbsent(endpoint, this::createLimiter);
+    }
+
+    /**
+     * Returns whether admission control is enabled.
+     *
+     * @return True if requests should pass through the limiters.
+     */
+    public boolean isEnabled() {
+        return environment.getProperty(PROPERTY_PREFIX + "enabled", Boolean.class, true);
+    }
+
+    /**
+     * Returns the value of the Retry-After header sent with rejected requests.
+     *
+     * @return The number of seconds a client should wait before retrying.
+     */
+    public long getRetryAfterSeconds() {
+        return environment.getProperty(PROPERTY_PREFIX + "retry-after-seconds", Long.class, 1L);
+    }
+
+    /**
+     * Creates a limiter for the specified endpoint and registers its metrics.
+     *
+     * @param endpoint The name of the endpoint.
+     * @return The created limiter.
+     */
+    private AdaptiveConcurrencyLimiter createLimiter(String endpoint) {
+        var limiter = new AdaptiveConcurrencyLimiter(endpoint,
+                getProperty(endpoint, "initial-limit", Integer.class, 20),
+                getProperty(endpoint, "min-limit", Integer.class, 1),
+                getProperty(endpoint, "max-limit", Integer.class, 200),
+                TimeUnit.MILLISECONDS.toNanos(getProperty(endpoint, "latency-threshold-ms", Long.class, 250L)),
+                getProperty(endpoint, "backoff-ratio", Double.class, 0.9));
+
+        Gauge.builder("users.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("endpoint", endpoint)
+                .description("Current concurrency limit of the endpoint")
+                .register(meterRegistry);
+        Gauge.builder("users.limiter.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("endpoint", endpoint)
+                .description("Requests currently being processed by the endpoint")
+                .register(meterRegistry);
+        FunctionCounter.builder("users.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                .tag("endpoint", endpoint)
+                .description("Requests rejected because the endpoint was at its concurrency limit")
+                .register(meterRegistry);
+
+        return limiter;
+    }
+
+    /**
+     * Resolves a limiter property, preferring the endpoint specific value over the default one.
+     *
+     * @param endpoint     The name of the endpoint.
+     * @param name         The name of the property.
+     * @param type         The type of the property.
+     * @param defaultValue The value used when neither property is set.
+     * @return The resolved property value.
+     */
+    private <T> T getProperty(String endpoint, String name, Class<T> type, T defaultValue) {
+        T fallback = environment.getProperty(PROPERTY_PREFIX + name, type, defaultValue);
+        return environment.getProperty(PROPERTY_PREFIX + "endpoints." + endpoint + "." + name, type, fallback);
+    }
+}
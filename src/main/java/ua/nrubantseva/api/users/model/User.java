@@ -1,12 +1,21 @@
 package ua.nrubantseva.api.users.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.Where;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -16,13 +25,46 @@ import java.util.UUID;
  * The class is annotated with @Entity to indicate it as a JPA entity and is mapped to a database table.
  * The Lombok annotations @Data, @NoArgsConstructor, and @AllArgsConstructor provide
  * automatic generation of getter, setter, equals, hashCode, and toString methods.
+ * The birth date is indexed to serve the range search, and the email is unique among the active users.
+ * Deleting a user only marks its row as a tombstone, which is hidden from every query and physically
+ * removed later by the TombstonePurger.
+ * Users are kept in the second-level cache, which writes go through, so repeated loads of the same user
+ * do not hit the database.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@Table(indexes = {
+        @Index(name = User.BIRTH_DATE_INDEX, columnList = "birth_date"),
+        @Index(name = User.ACTIVE_INDEX, columnList = "active")},
+        uniqueConstraints = @UniqueConstraint(name = User.EMAIL_UNIQUE_CONSTRAINT, columnNames = {"email", "active"}))
+@SQLDelete(sql = "UPDATE \"user\" SET \"active\" = NULL WHERE \"id\" = ?")
+@Where(clause = "\"active\" = TRUE")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
 
+    /**
+     * Name of the index on the birth date column.
+     */
+    public static final String BIRTH_DATE_INDEX = "idx_user_birth_date";
+
+    /**
+     * Name of the unique constraint on the email column.
+     */
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_user_email";
+
+    /**
+     * Name of the index on the active column, used to find the tombstones to purge.
+     */
+    public static final String ACTIVE_INDEX = "idx_user_active";
+
+    /**
+     * Name of the second-level cache region of the users.
+     */
+    public static final String CACHE_REGION = "users";
+
     /**
      * Unique identifier for the user.
      */
@@ -31,7 +73,7 @@ public class User {
     private UUID id;
 
     /**
-     * Email address of the user. Cannot be null.
+     * Email address of the user. Cannot be null and must be unique.
      */
     @Column(nullable = false)
     private String email;
@@ -65,4 +107,29 @@ public class User {
      */
     @Column
     private String phone;
+
+    /**
+     * True for an active user, null for a deleted user waiting to be purged. Tombstones are null rather than false,
+     * so they are ignored by the unique email constraint and the email can be reused. Rows written before
+     * the column existed default to active.
+     */
+    @JsonIgnore
+    @Column(name = "active", columnDefinition = "boolean default true")
+    private Boolean active = Boolean.TRUE;
+
+    /**
+     * Constructs a new active User with the specified attributes.
+     *
+     * @param id        The unique identifier of the user.
+     * @param email     The email address of the user.
+     * @param firstName The first name of the user.
+     * @param lastName  The last name of the user.
+     * @param birthDate The birth date of the user.
+     * @param address   The address of the user, can be null.
+     * @param phone     The phone number of the user, can be null.
+     */
+    public User(UUID id, String email, String firstName, String lastName, LocalDate birthDate,
+                String address, String phone) {
+        this(id, email, firstName, lastName, birthDate, address, phone, Boolean.TRUE);
+    }
 }
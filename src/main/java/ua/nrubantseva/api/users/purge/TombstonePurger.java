@@ -0,0 +1,280 @@
+package ua.nrubantseva.api.users.purge;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.nrubantseva.api.users.repository.UserRepository;
+
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background purger physically removing the tombstones left by deleted users.
+ * Every purge interval, if the current time is within the purge window, tombstones are deleted in small batches,
+ * each in its own short transaction, pausing between batches so the purge does not compete with regular traffic.
+ * A run stops after the maximum number of batches, after the maximum run time, when the window closes,
+ * or when no tombstone is left.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TombstonePurger {
+
+    /**
+     * Repository the tombstones are purged from.
+     */
+    private final UserRepository userRepository;
+
+    /**
+     * Template running each purged batch in a transaction.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Registry the purge metrics are published to.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Whether tombstones are purged in the background.
+     */
+    @Value("${user.purge.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Time between the ends of two purge runs.
+     */
+    @Value("${user.purge.interval-ms:60000}")
+    private long intervalMillis;
+
+    /**
+     * Local time the purge window opens at.
+     */
+    @Value("${user.purge.window-start:00:00}")
+    private String windowStart;
+
+    /**
+     * Local time the purge window closes at. A window ending before it starts spans midnight,
+     * and a window ending when it starts is always open.
+     */
+    @Value("${user.purge.window-end:00:00}")
+    private String windowEnd;
+
+    /**
+     * Maximum number of rows deleted per transaction.
+     */
+    @Value("${user.purge.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Maximum number of batches deleted per run.
+     */
+    @Value("${user.purge.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    /**
+     * Maximum duration of a run.
+     */
+    @Value("${user.purge.max-run-ms:10000}")
+    private long maxRunMillis;
+
+    /**
+     * Pause between two batches of a run.
+     */
+    @Value("${user.purge.pause-between-batches-ms:50}")
+    private long pauseBetweenBatchesMillis;
+
+    /**
+     * Number of tombstones seen by the last count, made by the last run within the purge window.
+     */
+    private final AtomicLong backlog = new AtomicLong();
+
+    /**
+     * Number of tombstones purged.
+     */
+    private final AtomicLong purged = new AtomicLong();
+
+    /**
+     * Number of transactions purging tombstones.
+     */
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Total time spent deleting batches, in nanoseconds.
+     */
+    private final AtomicLong purgeNanos = new AtomicLong();
+
+    /**
+     * Executor running the periodic purge.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Starts the periodic purge and publishes the purge metrics.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("users.purge.backlog", backlog, AtomicLong::get)
+                .description("Tombstones of deleted users waiting to be purged")
+                .register(meterRegistry);
+        registerCounter("users.purge.purged", purged, "Tombstones of deleted users purged");
+        registerCounter("users.purge.batches", batches, "Transactions purging tombstones");
+        FunctionCounter.builder("users.purge.time", purgeNanos, nanos -> nanos.get() / 1e9)
+                .description("Time spent purging tombstones, in seconds")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tombstone-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic purge, leaving the remaining tombstones to the next start.
+     *
+     * @throws InterruptedException If interrupted while waiting for the current run to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of tombstones seen by the last count, made by the last run within the purge window.
+     *
+     * @return The purge backlog.
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Returns the number of tombstones purged since the application started.
+     *
+     * @return The number of purged tombstones.
+     */
+    public long getPurged() {
+        return purged.get();
+    }
+
+    /**
+     * Returns the number of transactions purging tombstones since the application started.
+     *
+     * @return The number of purged batches.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * If the purge window is open, refreshes the backlog and runs a throttled purge. Outside the window,
+     * the tombstones are not counted either, so the backlog keeps the count of the last run.
+     * Runs are serialized, so a purge triggered manually does not overlap the periodic one.
+     *
+     * @return The number of tombstones purged by the run.
+     * @throws InterruptedException If interrupted while pausing between batches.
+     */
+    public synchronized int purge() throws InterruptedException {
+        if (!isWindowOpen()) {
+            return 0;
+        }
+        backlog.set(userRepository.countTombstones());
+        if (backlog.get() == 0) {
+            return 0;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxRunMillis);
+        int purgedByRun = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            long start = System.nanoTime();
+            int deleted = transactionTemplate.execute(status -> userRepository.purgeTombstones(batchSize));
+            purgeNanos.addAndGet(System.nanoTime() - start);
+            batches.incrementAndGet();
+            purged.addAndGet(deleted);
+            backlog.updateAndGet(value -> Math.max(0, value - deleted));
+            purgedByRun += deleted;
+
+            if (deleted < batchSize || System.nanoTime() >= deadline || !isWindowOpen()) {
+                break;
+            }
+            Thread.sleep(pauseBetweenBatchesMillis);
+        }
+
+        backlog.set(userRepository.countTombstones());
+        log.info("Purged {} tombstones, {} left", purgedByRun, backlog.get());
+        return purgedByRun;
+    }
+
+    /**
+     * Checks if the current time is within the configured purge window.
+     *
+     * @return True if tombstones can be purged now.
+     */
+    private boolean isWindowOpen() {
+        return isWithinWindow(LocalTime.parse(windowStart), LocalTime.parse(windowEnd), LocalTime.now());
+    }
+
+    /**
+     * Checks if a time is within a daily window.
+     *
+     * @param start The time the window opens at, inclusive.
+     * @param end   The time the window closes at, exclusive. Before the start for a window spanning midnight,
+     *              equal to the start for a window that is always open.
+     * @param time  The time to check.
+     * @return True if the time is within the window.
+     */
+    static boolean isWithinWindow(LocalTime start, LocalTime end, LocalTime time) {
+        if (start.equals(end)) {
+            return true;
+        }
+        if (start.isBefore(end)) {
+            return !time.isBefore(start) && time.isBefore(end);
+        }
+        return !time.isBefore(start) || time.isBefore(end);
+    }
+
+    /**
+     * Runs a purge, logging instead of propagating failures so the scheduler keeps running.
+     */
+    private void purgeSafely() {
+        try {
+            purge();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Tombstone purge failed", e);
+        }
+    }
+
+    /**
+     * Publishes a purge counter.
+     *
+     * @param name        The name of the counter.
+     * @param counter     The counter value.
+     * @param description The description of the counter.
+     */
+    private void registerCounter(String name, AtomicLong counter, String description) {
+        FunctionCounter.builder(name, counter, AtomicLong::get)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
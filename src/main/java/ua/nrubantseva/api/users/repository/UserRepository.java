@@ -1,27 +1,80 @@
 package ua.nrubantseva.api.users.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import ua.nrubantseva.api.users.model.User;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
- * Repository interface for managing User entities. Extends JpaRepository for basic CRUD operations.
+ * Repository interface for managing User entities. Extends JpaRepository for basic CRUD operations
+ * and implements the UserStorage used by the service, and UserTombstoneRepository for the tombstone purge.
  * The interface is annotated with @Repository to indicate it as a Spring repository bean.
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, UUID> {
+public interface UserRepository extends JpaRepository<User, UUID>, UserStorage, UserTombstoneRepository {
 
     /**
-     * Retrieves a list of users with birth dates within the specified range.
+     * Name of the query cache region of the range search.
+     */
+    String USERS_BY_BIRTH_DATE_CACHE_REGION = "users-by-birth-date";
+
+    /**
+     * Retrieves a list of users with birth dates within the specified range. Results are kept in the query cache
+     * until the next write to the users table.
      *
      * @param fromDate The start date of the birth date range.
      * @param toDate   The end date of the birth date range.
      * @return A list of users whose birth dates fall within the specified range.
      */
+    @Override
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = USERS_BY_BIRTH_DATE_CACHE_REGION)
+    })
     List<User> findByBirthDateGreaterThanEqualAndBirthDateLessThanEqual(LocalDate fromDate, LocalDate toDate);
 
+    // declared by both JpaRepository and UserStorage, redeclared so calls on UserRepository are not ambiguous
+    @Override
+    <S extends User> S saveAndFlush(S user);
+
+    @Override
+    <S extends User> List<S> saveAllAndFlush(Iterable<S> users);
+
+    @Override
+    Optional<User> findById(UUID id);
+
+    @Override
+    boolean existsById(UUID id);
+
+    @Override
+    List<User> findAllById(Iterable<UUID> ids);
+
+    @Override
+    void deleteById(UUID id);
+
+    /**
+     * Retrieves the user with the specified email, using the unique email index.
+     *
+     * @param email The email of the user.
+     * @return The user with the specified email, if any.
+     */
+    @Override
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Counts the tombstones waiting to be purged, using the index on the active column.
+     *
+     * @return The number of tombstones.
+     */
+    @Query(value = "SELECT COUNT(*) FROM \"user\" WHERE \"active\" IS NULL", nativeQuery = true)
+    long countTombstones();
+
 }
@@ -0,0 +1,81 @@
+package ua.nrubantseva.api.users.repository;
+
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage of the users, limited to the operations the service and the email write-behind queue need.
+ * It is implemented by the JPA UserRepository and, with the 'columnar' profile, by the in-memory ColumnarUserStorage.
+ */
+public interface UserStorage {
+
+    /**
+     * Saves a user and makes the write visible to the following reads.
+     *
+     * @param user The user to save.
+     * @param <S>  The type of the user.
+     * @return The saved user.
+     */
+    <S extends User> S saveAndFlush(S user);
+
+    /**
+     * Saves users and makes the writes visible to the following reads.
+     *
+     * @param users The users to save.
+     * @param <S>   The type of the users.
+     * @return The saved users.
+     */
+    <S extends User> List<S> saveAllAndFlush(Iterable<S> users);
+
+    /**
+     * Retrieves the user with the specified ID.
+     *
+     * @param id The ID of the user.
+     * @return The user with the specified ID, if any.
+     */
+    Optional<User> findById(UUID id);
+
+    /**
+     * Checks if a user with the specified ID exists.
+     *
+     * @param id The ID of the user.
+     * @return True if the user exists.
+     */
+    boolean existsById(UUID id);
+
+    /**
+     * Retrieves the users with the specified IDs, skipping the IDs of missing users.
+     *
+     * @param ids The IDs of the users.
+     * @return The users found, in no particular order.
+     */
+    List<User> findAllById(Iterable<UUID> ids);
+
+    /**
+     * Retrieves the user with the specified email.
+     *
+     * @param email The email of the user.
+     * @return The user with the specified email, if any.
+     */
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Retrieves a list of users with birth dates within the specified range.
+     *
+     * @param fromDate The start date of the birth date range.
+     * @param toDate   The end date of the birth date range.
+     * @return A list of users whose birth dates fall within the specified range.
+     */
+    List<User> findByBirthDateGreaterThanEqualAndBirthDateLessThanEqual(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Deletes the user with the specified ID.
+     *
+     * @param id The ID of the user.
+     */
+    void deleteById(UUID id);
+}
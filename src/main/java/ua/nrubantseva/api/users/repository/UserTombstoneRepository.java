@@ -0,0 +1,16 @@
+package ua.nrubantseva.api.users.repository;
+
+/**
+ * Repository fragment purging the tombstones of deleted users, implemented by UserTombstoneRepositoryImpl.
+ */
+public interface UserTombstoneRepository {
+
+    /**
+     * Physically deletes a batch of tombstones, the rows of deleted users, using the index on the active column.
+     * Must be called within a transaction.
+     *
+     * @param limit The maximum number of rows to delete.
+     * @return The number of rows deleted.
+     */
+    int purgeTombstones(int limit);
+}
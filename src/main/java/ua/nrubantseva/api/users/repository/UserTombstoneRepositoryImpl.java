@@ -0,0 +1,31 @@
+package ua.nrubantseva.api.users.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import ua.nrubantseva.api.users.model.User;
+
+/**
+ * Implementation of the UserTombstoneRepository fragment.
+ * The purge is a native statement, which Hibernate cannot relate to the mapped tables by itself: without
+ * a synchronized query space, every purged batch would evict all second-level cache regions and invalidate
+ * every cached query. The statement is declared to touch the User table only, so the other regions are kept.
+ */
+public class UserTombstoneRepositoryImpl implements UserTombstoneRepository {
+
+    /**
+     * Entity manager running the purge.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int purgeTombstones(int limit) {
+        return entityManager.createNativeQuery("DELETE FROM \"user\" WHERE \"id\" IN "
+                        + "(SELECT \"id\" FROM \"user\" WHERE \"active\" IS NULL LIMIT :limit)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(User.class)
+                .setParameter("limit", limit)
+                .executeUpdate();
+    }
+}
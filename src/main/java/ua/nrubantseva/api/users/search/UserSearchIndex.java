@@ -0,0 +1,373 @@
+package ua.nrubantseva.api.users.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ua.nrubantseva.api.users.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over the first name, last name and email of the users.
+ * Lower-cased field values are kept in a sorted map, so the users whose field starts with a term are found
+ * by scanning a contiguous key range. The index is refreshed from the committed state of a user after each write
+ * and rebuilt from the database on startup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserSearchIndex implements ApplicationRunner {
+
+    /**
+     * Number of rows fetched at once when the index is rebuilt.
+     */
+    private static final int REBUILD_FETCH_SIZE = 10_000;
+
+    /**
+     * Number of locks serializing the refreshes of the users.
+     */
+    private static final int REFRESH_LOCK_STRIPES = 64;
+
+    /**
+     * Template used to read the users when the index is rebuilt.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Maximum number of postings scanned per search, bounding the search latency for very short queries.
+     */
+    @Value("${user.search.max-candidates:1000}")
+    private int maxCandidates;
+
+    /**
+     * Users indexed under each lower-cased field value.
+     */
+    private final NavigableMap<String, List<Posting>> postings = new TreeMap<>();
+
+    /**
+     * Tokens indexed for each user, used to replace or remove the user.
+     */
+    private final Map<UUID, Posting[]> postingsByUser = new HashMap<>();
+
+    /**
+     * Lock guarding both maps.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Locks serializing the refreshes of the users whose IDs hash to the same stripe.
+     */
+    private final Object[] refreshLocks = Stream.generate(Object::new).limit(REFRESH_LOCK_STRIPES).toArray();
+
+    /**
+     * Rebuilds the index from the active users stored in the database, skipping the tombstones of deleted users.
+     *
+     * @param args The application arguments.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement("SELECT \"id\", \"first_name\", \"last_name\", \"email\" "
+                    + "FROM \"user\" WHERE \"active\" = TRUE");
+            statement.setFetchSize(REBUILD_FETCH_SIZE);
+            return statement;
+        }, resultSet -> {
+            index(resultSet.getObject(1, UUID.class), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4));
+        });
+        log.info("Indexed {} users for search in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds the user to the index, replacing its previously indexed values.
+     *
+     * @param user The user to index.
+     */
+    public void index(User user) {
+        index(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail());
+    }
+
+    /**
+     * Indexes the committed state of a user, or removes the user if it no longer exists.
+     * Refreshes of the same user are serialized from the read to the index update, so whatever the order
+     * in which concurrent writes call it after their commit, the last refresh indexes the latest committed state.
+     *
+     * @param userId        The ID of the user.
+     * @param committedUser The supplier reading the committed state of the user.
+     */
+    public void refresh(UUID userId, Supplier<Optional<User>> committedUser) {
+        synchronized (refreshLocks[Math.floorMod(userId.hashCode(), refreshLocks.length)]) {
+            committedUser.get().ifPresentOrElse(this::index, () -> remove(userId));
+        }
+    }
+
+    /**
+     * Removes the user from the index.
+     *
+     * @param userId The ID of the user to remove.
+     */
+    public void remove(UUID userId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the users whose first name, last name or email start with every term of the query.
+     * The candidates are taken from the postings of the most selective term, so a common term does not
+     * crowd the matches of a rarer one out of the scanned candidates.
+     * Results are ranked by the field matched by the first term (last name, then first name, then email),
+     * exact matches first, then by how close the matched value is to the term.
+     *
+     * @param query The query, whose terms are separated by whitespace.
+     * @param limit The maximum number of results.
+     * @return The IDs of the matching users, best match first.
+     */
+    public List<UUID> search(String query, int limit) {
+        String[] terms = normalize(query).split("\\s+");
+        if (terms[0].isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, Match> matches = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int scanned = 0;
+            for (var entry : prefixRange(mostSelectiveTerm(terms)).entrySet()) {
+                for (Posting posting : entry.getValue()) {
+                    Posting[] userPostings = postingsByUser.get(posting.userId());
+                    if (!matches.containsKey(posting.userId()) && matchesAll(userPostings, terms)) {
+                        matches.put(posting.userId(), bestMatch(posting.userId(), userPostings, terms[0]));
+                    }
+                    scanned++;
+                }
+                if (scanned >= maxCandidates) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return matches.values().stream()
+                .sorted(Match.RANKING)
+                .limit(limit)
+                .map(Match::userId)
+                .toList();
+    }
+
+    /**
+     * Returns the number of indexed users.
+     *
+     * @return The number of indexed users.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postingsByUser.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the user fields to the index, replacing its previously indexed values.
+     *
+     * @param userId    The ID of the user.
+     * @param firstName The first name of the user.
+     * @param lastName  The last name of the user.
+     * @param email     The email of the user.
+     */
+    private void index(UUID userId, String firstName, String lastName, String email) {
+        lock.writeLock().lock();
+        try {
+            indexUnlocked(userId, normalize(lastName), normalize(firstName), normalize(email));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds normalized user fields to the index, replacing its previously indexed values, the write lock must be held.
+     *
+     * @param userId    The ID of the user.
+     * @param lastName  The normalized last name of the user.
+     * @param firstName The normalized first name of the user.
+     * @param email     The normalized email of the user.
+     */
+    private void indexUnlocked(UUID userId, String lastName, String firstName, String email) {
+        Posting[] userPostings = {
+                new Posting(userId, Field.LAST_NAME, lastName),
+                new Posting(userId, Field.FIRST_NAME, firstName),
+                new Posting(userId, Field.EMAIL, email)
+        };
+        removeUnlocked(userId);
+        postingsByUser.put(userId, userPostings);
+        for (Posting posting : userPostings) {
+            postings.computeIfAbsent(posting.token(), token -> new ArrayList<>(1)).add(posting);
+        }
+    }
+
+    /**
+     * Removes the user from the index, the write lock must be held.
+     *
+     * @param userId The ID of the user to remove.
+     */
+    private void removeUnlocked(UUID userId) {
+        Posting[] userPostings = postingsByUser.remove(userId);
+        if (userPostings == null) {
+            return;
+        }
+        for (Posting posting : userPostings) {
+            List<Posting> tokenPostings = postings.get(posting.token());
+            if (tokenPostings != null) {
+                tokenPostings.removeIf(candidate -> candidate.userId().equals(userId));
+                if (tokenPostings.isEmpty()) {
+                    postings.remove(posting.token());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the term with the fewest postings, counting up to the maximum number of candidates per term,
+     * the read lock must be held.
+     *
+     * @param terms The terms of the query.
+     * @return The term whose postings are scanned for candidates.
+     */
+    private String mostSelectiveTerm(String[] terms) {
+        String selective = terms[0];
+        int fewest = Integer.MAX_VALUE;
+        for (String term : terms) {
+            int count = 0;
+            for (List<Posting> tokenPostings : prefixRange(term).values()) {
+                count += tokenPostings.size();
+                if (count >= fewest || count >= maxCandidates) {
+                    break;
+                }
+            }
+            if (count < fewest) {
+                selective = term;
+                fewest = count;
+            }
+        }
+        return selective;
+    }
+
+    /**
+     * Returns the postings of the tokens starting with the term, the read lock must be held.
+     *
+     * @param term The term.
+     * @return The postings by token, in token order.
+     */
+    private NavigableMap<String, List<Posting>> prefixRange(String term) {
+        return postings.subMap(term, true, term + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Checks that every term is a prefix of one of the user fields.
+     *
+     * @param userPostings The indexed fields of the user.
+     * @param terms        The terms of the query.
+     * @return True if all terms match.
+     */
+    private static boolean matchesAll(Posting[] userPostings, String[] terms) {
+        return Arrays.stream(terms)
+                .allMatch(term -> Arrays.stream(userPostings).anyMatch(posting -> posting.token().startsWith(term)));
+    }
+
+    /**
+     * Returns the best match of a term among the fields of a user.
+     *
+     * @param userId       The ID of the user.
+     * @param userPostings The indexed fields of the user, at least one of which starts with the term.
+     * @param term         The term.
+     * @return The best match of the term.
+     */
+    private static Match bestMatch(UUID userId, Posting[] userPostings, String term) {
+        return Arrays.stream(userPostings)
+                .filter(posting -> posting.token().startsWith(term))
+                .map(posting -> new Match(userId, posting.field(), posting.token().length() - term.length()))
+                .reduce(Match::best)
+                .orElseThrow();
+    }
+
+    /**
+     * Normalizes a value for indexing and searching.
+     *
+     * @param value The value to normalize.
+     * @return The trimmed, lower-cased value.
+     */
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexed user fields, in ranking order.
+     */
+    private enum Field {
+        LAST_NAME, FIRST_NAME, EMAIL
+    }
+
+    /**
+     * A user field indexed under a token.
+     *
+     * @param userId The ID of the user.
+     * @param field  The indexed field.
+     * @param token  The normalized field value.
+     */
+    private record Posting(UUID userId, Field field, String token) {
+    }
+
+    /**
+     * The best match of a search term for a user.
+     *
+     * @param userId   The ID of the user.
+     * @param field    The matched field.
+     * @param distance The number of characters of the matched value beyond the term.
+     */
+    private record Match(UUID userId, Field field, int distance) {
+
+        /**
+         * Orders matches from best to worst.
+         */
+        private static final Comparator<Match> RANKING = Comparator
+                .comparing((Match match) -> match.distance() > 0)
+                .thenComparing(Match::field)
+                .thenComparingInt(Match::distance)
+                .thenComparing(Match::userId);
+
+        /**
+         * Returns the better of two matches for the same user.
+         *
+         * @param first  The first match.
+         * @param second The second match.
+         * @return The better match.
+         */
+        private static Match best(Match first, Match second) {
+            return RANKING.compare(first, second) <= 0 ? first : second;
+        }
+    }
+}
@@ -2,16 +2,27 @@ package ua.nrubantseva.api.users.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
 import ua.nrubantseva.api.users.exception.EntityIdNotFoundException;
 import ua.nrubantseva.api.users.exception.UserAgeRestrictionException;
 import ua.nrubantseva.api.users.model.User;
-import ua.nrubantseva.api.users.repository.UserRepository;
+import ua.nrubantseva.api.users.repository.UserStorage;
+import ua.nrubantseva.api.users.search.UserSearchIndex;
+import ua.nrubantseva.api.users.writebehind.EmailWriteBehindQueue;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service class providing business logic for managing User entities.
@@ -21,9 +32,19 @@ import java.util.UUID;
 public class UserService {
 
     /**
-     * Repository for User entities.
+     * Storage of the User entities.
      */
-    public final UserRepository userRepository;
+    public final UserStorage userStorage;
+
+    /**
+     * Prefix index over the names and emails of the users, refreshed after every write.
+     */
+    public final UserSearchIndex userSearchIndex;
+
+    /**
+     * Queue of email updates acknowledged before they are written, whose pending emails are visible to reads.
+     */
+    public final EmailWriteBehindQueue emailWriteBehindQueue;
 
     /**
      * Age restriction for user registration.
@@ -36,12 +57,15 @@ public class UserService {
      *
      * @param userModificationRequest The request containing user information.
      * @return The created User entity.
-     * @throws UserAgeRestrictionException If the user does not meet the age restriction.
+     * @throws UserAgeRestrictionException     If the user does not meet the age restriction.
+     * @throws DataIntegrityViolationException If a user with the same email already exists.
      */
     public User createUser(UserModificationRequest userModificationRequest) {
         isNotAgeRestriction(userModificationRequest.getBirthDate());
 
-        return userRepository.save(mapUserModificationRequestToUser(userModificationRequest));
+        User user = userStorage.saveAndFlush(mapUserModificationRequestToUser(userModificationRequest));
+        refreshSearchIndexAfterCommit(user.getId());
+        return user;
     }
 
     /**
@@ -49,16 +73,19 @@ public class UserService {
      *
      * @param userId                   The ID of the user to be updated.
      * @param userModificationRequest The request containing updated user information.
-     * @throws UserAgeRestrictionException If the user does not meet the age restriction.
-     * @throws EntityIdNotFoundException   If the user with the specified ID is not found.
+     * @throws UserAgeRestrictionException     If the user does not meet the age restriction.
+     * @throws EntityIdNotFoundException       If the user with the specified ID is not found.
+     * @throws DataIntegrityViolationException If another user has the same email.
      */
     public void updateUser(UUID userId, UserModificationRequest userModificationRequest) {
         isNotAgeRestriction(userModificationRequest.getBirthDate());
         isExistById(userId);
+        emailWriteBehindQueue.discard(userId);
 
         User user = mapUserModificationRequestToUser(userModificationRequest);
         user.setId(userId);
-        userRepository.save(user);
+        userStorage.saveAndFlush(user);
+        refreshSearchIndexAfterCommit(userId);
     }
 
     /**
@@ -84,12 +111,42 @@ public class UserService {
      *
      * @param userId The ID of the user to be updated.
      * @param email  The new email address.
-     * @throws EntityIdNotFoundException If the user with the specified ID is not found.
+     * @throws EntityIdNotFoundException       If the user with the specified ID is not found.
+     * @throws DataIntegrityViolationException If another user has the same email.
      */
     public void updateUserEmail(UUID userId, String email) {
         User userInDB = isExistById(userId);
+        emailWriteBehindQueue.discard(userId);
         userInDB.setEmail(email);
-        userRepository.save(userInDB);
+        userStorage.saveAndFlush(userInDB);
+        refreshSearchIndexAfterCommit(userId);
+    }
+
+    /**
+     * Checks if email updates can be queued with updateUserEmailAsync.
+     *
+     * @return True if the email write-behind queue is enabled.
+     */
+    public boolean isAsyncEmailUpdateEnabled() {
+        return emailWriteBehindQueue.isEnabled();
+    }
+
+    /**
+     * Queues an update of the email of an existing user, to be written in a later batch.
+     * Until then, reads return the queued email. A queued email that violates the unique email index
+     * is dropped when the batch is written.
+     *
+     * @param userId The ID of the user to be updated.
+     * @param email  The new email address.
+     * @throws EntityIdNotFoundException         If the user with the specified ID is not found.
+     * @throws ConcurrencyLimitExceededException If the queue is full.
+     */
+    public void updateUserEmailAsync(UUID userId, String email) {
+        if (!userStorage.existsById(userId)) {
+            throw new EntityIdNotFoundException("user with id " + userId + " is not found");
+        }
+        emailWriteBehindQueue.enqueue(userId, email);
+        refreshSearchIndexAfterCommit(userId);
     }
 
     /**
@@ -105,27 +162,74 @@ public class UserService {
     }
 
     /**
-     * Checks if a user with the specified ID exists in the repository.
+     * Refreshes the search index entry of a user from its committed state, with its queued email if any.
+     * Within a transaction, the refresh runs once the transaction has committed, so a rolled back write never
+     * reaches the index. Reading the committed state rather than indexing the written user keeps the index
+     * from ending up with the older of two concurrent writes of the same user.
+     *
+     * @param userId The ID of the written user.
+     */
+    private void refreshSearchIndexAfterCommit(UUID userId) {
+        Runnable refresh = () -> userSearchIndex.refresh(userId,
+                () -> userStorage.findById(userId).map(this::withPendingEmail));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh.run();
+            }
+        });
+    }
+
+    /**
+     * Checks if a user with the specified ID exists in the storage.
      *
      * @param userId The ID of the user to check.
      * @return The User entity if found.
      * @throws EntityIdNotFoundException If the user with the specified ID is not found.
      */
     private User isExistById(UUID userId) {
-        return userRepository
+        return userStorage
                 .findById(userId)
                 .orElseThrow(() -> new EntityIdNotFoundException("user with id " + userId + " is not found"));
     }
 
     /**
-     * Deletes a user based on the specified ID.
+     * Deletes a user based on the specified ID. The row is only marked as a tombstone, hidden from every read
+     * and physically removed later by the TombstonePurger, so deletes stay cheap during peak hours.
      *
      * @param userId The ID of the user to be deleted.
      * @throws EntityIdNotFoundException If the user with the specified ID is not found.
      */
     public void deleteUserById(UUID userId) {
         isExistById(userId);
-        userRepository.deleteById(userId);
+        emailWriteBehindQueue.discard(userId);
+        userStorage.deleteById(userId);
+        refreshSearchIndexAfterCommit(userId);
+    }
+
+    /**
+     * Retrieves the user with the specified email.
+     *
+     * @param email The email of the user.
+     * @return The user with the specified email.
+     * @throws EntityIdNotFoundException If no user has the specified email.
+     */
+    public User findByEmail(String email) {
+        UUID pendingUserId = emailWriteBehindQueue.getUserIdByPendingEmail(email);
+        Optional<User> user = pendingUserId != null
+                ? userStorage.findById(pendingUserId)
+                : userStorage.findByEmail(email);
+
+        // the pending email may have been flushed after the user was read, in which case it is in the database now
+        return user
+                .map(this::withPendingEmail)
+                .filter(found -> email.equals(found.getEmail()))
+                .or(() -> pendingUserId != null ? userStorage.findByEmail(email) : Optional.empty())
+                .orElseThrow(() -> new EntityIdNotFoundException("user with email " + email + " is not found"));
     }
 
     /**
@@ -136,6 +240,56 @@ public class UserService {
      * @return A list of users whose birth dates fall within the specified range.
      */
     public List<User> findByBirthDateRange(LocalDate fromDate, LocalDate toDate) {
-        return userRepository.findByBirthDateGreaterThanEqualAndBirthDateLessThanEqual(fromDate, toDate);
+        return withPendingEmails(userStorage.findByBirthDateGreaterThanEqualAndBirthDateLessThanEqual(fromDate, toDate));
+    }
+
+    /**
+     * Searches users whose first name, last name or email start with the terms of the query.
+     *
+     * @param query The query, whose terms are separated by whitespace.
+     * @param limit The maximum number of users to return.
+     * @return The matching users, best match first.
+     */
+    public List<User> search(String query, int limit) {
+        List<UUID> userIds = userSearchIndex.search(query, limit);
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, User> usersById = userStorage.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return withPendingEmails(userIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    /**
+     * Applies the queued email updates to the users read from the storage.
+     *
+     * @param users The users read from the storage.
+     * @return The users as seen with their queued emails.
+     */
+    private List<User> withPendingEmails(List<User> users) {
+        if (emailWriteBehindQueue.isEmpty()) {
+            return users;
+        }
+        return users.stream().map(this::withPendingEmail).toList();
+    }
+
+    /**
+     * Applies the queued email update, if any, to a user read from the storage.
+     * A copy is returned, so the managed entity is left untouched.
+     *
+     * @param user The user read from the storage.
+     * @return The user as seen with its queued email.
+     */
+    private User withPendingEmail(User user) {
+        String pendingEmail = emailWriteBehindQueue.getPendingEmail(user.getId());
+        if (pendingEmail == null || pendingEmail.equals(user.getEmail())) {
+            return user;
+        }
+        return new User(user.getId(), pendingEmail, user.getFirstName(), user.getLastName(),
+                user.getBirthDate(), user.getAddress(), user.getPhone());
     }
 }
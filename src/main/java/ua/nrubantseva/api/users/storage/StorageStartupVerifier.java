@@ -0,0 +1,93 @@
+package ua.nrubantseva.api.users.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runner verifying the users table of a persistent database before the application reports itself ready,
+ * when 'user.storage.verify-on-startup' is set.
+ * The row count of the table is compared with the number of entries of the birth date index, which catches
+ * index entries that are missing or left over as a whole. A random sample of the rows read from the table is then
+ * looked up through the birth date index one by one, which catches rows whose index entry is missing or holds
+ * a stale birth date even when the counts agree. Counting the index entries reads every index page, which also
+ * preloads the index used by the range search into the cache.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageStartupVerifier implements ApplicationRunner {
+
+    /**
+     * Template used to query the database.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Whether the verification runs on startup.
+     */
+    @Value("${user.storage.verify-on-startup:false}")
+    private boolean verifyOnStartup;
+
+    /**
+     * Number of rows looked up through the birth date index.
+     */
+    @Value("${user.storage.verify-sample-size:1000}")
+    private int sampleSize;
+
+    /**
+     * Verifies the users table and preloads its birth date index, if enabled.
+     *
+     * @param args The application arguments.
+     * @throws IllegalStateException If the table and the index are inconsistent.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (verifyOnStartup) {
+            verify();
+        }
+    }
+
+    /**
+     * Verifies the users table against its birth date index and preloads the index.
+     *
+     * @return The number of users verified.
+     * @throws IllegalStateException If the table and the index are inconsistent.
+     */
+    public long verify() {
+        long start = System.nanoTime();
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"user\"", Long.class);
+        Long indexEntries = jdbcTemplate.queryForObject("SELECT COUNT(\"birth_date\") FROM \"user\" USE INDEX (\""
+                + User.BIRTH_DATE_INDEX + "\") WHERE \"birth_date\" >= ?", Long.class, LocalDate.of(1, 1, 1));
+
+        if (rows == null || !rows.equals(indexEntries)) {
+            throw new IllegalStateException("Storage integrity check failed: table has " + rows
+                    + " users, birth date index has " + indexEntries + " entries");
+        }
+
+        List<Map<String, Object>> sample = jdbcTemplate.queryForList(
+                "SELECT \"id\", \"birth_date\" FROM \"user\" ORDER BY RAND() LIMIT ?", sampleSize);
+        for (Map<String, Object> row : sample) {
+            Long found = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"user\" USE INDEX (\""
+                            + User.BIRTH_DATE_INDEX + "\") WHERE \"birth_date\" = ? AND \"id\" = ?", Long.class,
+                    row.get("birth_date"), row.get("id"));
+            if (found == null || found != 1) {
+                throw new IllegalStateException("Storage integrity check failed: user " + row.get("id")
+                        + " is missing from the birth date index");
+            }
+        }
+        log.info("Verified {} users, {} of them through the birth date index, and preloaded the index in {} ms",
+                rows, sample.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return rows;
+    }
+}
@@ -0,0 +1,592 @@
+package ua.nrubantseva.api.users.writebehind;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserStorage;
+import ua.nrubantseva.api.users.search.UserSearchIndex;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind queue for email updates acknowledged before they are written to the database.
+ * Updates are coalesced per user, the last write wins, and flushed in batched transactions every flush interval
+ * or as soon as a batch is full. The number of pending users, including the batch being flushed, is bounded:
+ * when the queue is full, writers wait up to the offer timeout and are then rejected. Pending emails are visible to reads through getPendingEmail
+ * and are drained when the application shuts down. A batch that fails for any reason other than a constraint
+ * violation is kept in the queue and retried with an exponential backoff, so acknowledged updates survive
+ * an unavailable database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailWriteBehindQueue {
+
+    /**
+     * Storage the emails are written to.
+     */
+    private final UserStorage userStorage;
+
+    /**
+     * Search index kept in sync with the pending emails.
+     */
+    private final UserSearchIndex userSearchIndex;
+
+    /**
+     * Template running each flushed batch in a transaction.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Registry the queue metrics are published to.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Whether asynchronous email updates are accepted.
+     */
+    @Value("${user.email.write-behind.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Maximum number of users with a pending email, including the users of the batch being flushed.
+     */
+    @Value("${user.email.write-behind.capacity:10000}")
+    private int capacity;
+
+    /**
+     * Maximum number of emails written per transaction.
+     */
+    @Value("${user.email.write-behind.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Maximum time an email stays pending before it is flushed.
+     */
+    @Value("${user.email.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    /**
+     * Maximum time a writer waits for room in a full queue.
+     */
+    @Value("${user.email.write-behind.offer-timeout-ms:100}")
+    private long offerTimeoutMillis;
+
+    /**
+     * Time the flusher waits before retrying after a failed batch, doubled after each consecutive failure.
+     */
+    @Value("${user.email.write-behind.retry-backoff-ms:200}")
+    private long retryBackoffMillis;
+
+    /**
+     * Maximum time the flusher waits before retrying after a failed batch.
+     */
+    @Value("${user.email.write-behind.max-retry-backoff-ms:30000}")
+    private long maxRetryBackoffMillis;
+
+    /**
+     * Number of seconds a rejected writer is told to wait before retrying.
+     */
+    @Value("${user.limiter.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    /**
+     * Emails waiting to be flushed, by user ID, in arrival order.
+     */
+    private final LinkedHashMap<UUID, String> pending = new LinkedHashMap<>();
+
+    /**
+     * Emails of the batch being flushed, visible to reads until the batch is committed.
+     */
+    private final Map<UUID, String> flushing = new HashMap<>();
+
+    /**
+     * Users by pending email, used to look users up by an email that is not written yet.
+     */
+    private final Map<String, UUID> usersByPendingEmail = new HashMap<>();
+
+    /**
+     * Lock guarding the maps above.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Condition signalled when room is freed in the queue.
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Lock held while a batch is flushed.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Number of accepted email updates.
+     */
+    private final AtomicLong enqueued = new AtomicLong();
+
+    /**
+     * Number of email updates that replaced a pending update of the same user.
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Number of emails written to the database.
+     */
+    private final AtomicLong flushed = new AtomicLong();
+
+    /**
+     * Number of emails dropped because they violate a constraint or their user was deleted.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Number of emails put back in the queue because their batch failed.
+     */
+    private final AtomicLong retried = new AtomicLong();
+
+    /**
+     * Number of transactions written.
+     */
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Executor running the periodic and size-triggered flushes.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Whether a size-triggered flush is waiting for the flusher, so a full queue schedules it only once.
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Number of batches that failed in a row. Guarded by the flush lock.
+     */
+    private int consecutiveFailures;
+
+    /**
+     * Whether the flusher is backing off after a failed batch, until retryAtNanos.
+     */
+    private volatile boolean backingOff;
+
+    /**
+     * Time before which the flusher does not retry after a failed batch, in nanoseconds.
+     * Only meaningful while backingOff is set, as nanoTime values may be negative.
+     */
+    private volatile long retryAtNanos;
+
+    /**
+     * Whether the queue still accepts updates.
+     */
+    private volatile boolean accepting = true;
+
+    /**
+     * Starts the flusher and publishes the queue metrics.
+     */
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("users.email.write.behind.pending", this, EmailWriteBehindQueue::size)
+                .description("Users with an email update waiting to be written")
+                .register(meterRegistry);
+        registerCounter("enqueued", enqueued, "Email updates accepted by the write-behind queue");
+        registerCounter("coalesced", coalesced, "Email updates replacing a pending update of the same user");
+        registerCounter("flushed", flushed, "Email updates written to the database");
+        registerCounter("failed", failed, "Email updates dropped because they violate a constraint or their user was deleted");
+        registerCounter("retried", retried, "Email updates put back in the queue because their batch failed");
+        registerCounter("batches", batches, "Transactions written by the write-behind queue");
+    }
+
+    /**
+     * Returns whether asynchronous email updates are accepted.
+     *
+     * @return True if the write-behind mode is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues an email update, replacing a pending update of the same user.
+     *
+     * @param userId The ID of the user.
+     * @param email  The new email address.
+     * @throws ConcurrencyLimitExceededException If the queue stays full for the offer timeout or is shutting down.
+     */
+    public void enqueue(UUID userId, String email) {
+        boolean full;
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+            while (accepting && isFull(userId) && remainingNanos > 0) {
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            if (!accepting || isFull(userId)) {
+                throw new ConcurrencyLimitExceededException("Email update queue is full, try again later", retryAfterSeconds);
+            }
+
+            String previous = pending.remove(userId);
+            if (previous != null) {
+                usersByPendingEmail.remove(previous, userId);
+                coalesced.incrementAndGet();
+            }
+            pending.put(userId, email);
+            usersByPendingEmail.put(email, userId);
+            enqueued.incrementAndGet();
+            full = pending.size() >= batchSize;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyLimitExceededException("Email update was interrupted, try again later", retryAfterSeconds);
+        } finally {
+            lock.unlock();
+        }
+
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    /**
+     * Checks if the queue has no room for an update of the user. The batch being flushed counts against
+     * the capacity until it is released, so putting its unwritten emails back in the queue after a failure
+     * never grows the queue past its capacity. An update of a user that is pending or being flushed takes
+     * no extra room and is always accepted. Must be called with the lock held.
+     *
+     * @param userId The ID of the user.
+     * @return True if the update must wait for room.
+     */
+    private boolean isFull(UUID userId) {
+        return !pending.containsKey(userId) && !flushing.containsKey(userId)
+                && pending.size() + flushing.size() >= capacity;
+    }
+
+    /**
+     * Returns the email of the user that is pending or being flushed.
+     *
+     * @param userId The ID of the user.
+     * @return The pending email, or null if there is none.
+     */
+    public String getPendingEmail(UUID userId) {
+        lock.lock();
+        try {
+            String email = pending.get(userId);
+            return email != null ? email : flushing.get(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the user whose pending email is the specified one.
+     *
+     * @param email The email to look up.
+     * @return The ID of the user, or null if no pending email matches.
+     */
+    public UUID getUserIdByPendingEmail(String email) {
+        lock.lock();
+        try {
+            return usersByPendingEmail.get(email);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the pending email of the user and waits for an in-progress flush to complete,
+     * so a synchronous write of the user is not overwritten by an older queued email.
+     *
+     * @param userId The ID of the user.
+     */
+    public void discard(UUID userId) {
+        lock.lock();
+        try {
+            removePending(userId);
+            if (!flushing.containsKey(userId)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushLock.lock();
+        try {
+            // a failed flush puts the email back in the queue
+            lock.lock();
+            try {
+                removePending(userId);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the pending email of the user. Must be called with the lock held.
+     *
+     * @param userId The ID of the user.
+     */
+    private void removePending(UUID userId) {
+        String email = pending.remove(userId);
+        if (email != null) {
+            usersByPendingEmail.remove(email, userId);
+            notFull.signalAll();
+        }
+    }
+
+    /**
+     * Returns whether there are no pending emails.
+     *
+     * @return True if no email is pending or being flushed.
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return pending.isEmpty() && flushing.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of users with a pending email.
+     *
+     * @return The number of pending emails.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size() + flushing.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending emails, one batch after another. A failing batch is logged and kept in the queue
+     * while the next ones are written, and the drain gives up once every pending email failed since
+     * the last successful batch.
+     */
+    public void flushAll() {
+        int failedBatches = 0;
+        while (true) {
+            try {
+                if (flush() == 0) {
+                    return;
+                }
+                failedBatches = 0;
+            } catch (RuntimeException e) {
+                log.error("Email write-behind flush failed, batch kept in the queue", e);
+                failedBatches++;
+                if ((long) failedBatches * batchSize >= size()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting updates and drains the queue before the application shuts down.
+     *
+     * @throws InterruptedException If interrupted while waiting for the flusher to stop.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        accepting = false;
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flushAll();
+        if (isEmpty()) {
+            log.info("Email write-behind queue drained, {} updates written", flushed.get());
+        } else {
+            log.error("Email write-behind queue drain failed, {} updates written, {} updates lost", flushed.get(), size());
+        }
+    }
+
+    /**
+     * Writes the next batch unless the flusher is backing off after a failure, logging instead of propagating
+     * failures so the flusher keeps running.
+     */
+    private void flushSafely() {
+        flushScheduled.set(false);
+        if (backingOff && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Email write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * Writes the next batch of pending emails in a single transaction. If the batch violates a constraint,
+     * such as the unique email index, its emails are written one by one and the violating ones are dropped.
+     * If the batch fails for any other reason, its unwritten emails are put back in the queue and the flusher
+     * backs off before retrying.
+     *
+     * @return The number of emails taken from the queue.
+     */
+    private int flush() {
+        flushLock.lock();
+        try {
+            Map<UUID, String> batch = takeBatch();
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            Map<UUID, String> unwritten = new LinkedHashMap<>(batch);
+            try {
+                try {
+                    write(batch);
+                    unwritten.clear();
+                } catch (DataIntegrityViolationException e) {
+                    writeOneByOne(unwritten);
+                }
+                consecutiveFailures = 0;
+                backingOff = false;
+            } catch (RuntimeException e) {
+                consecutiveFailures++;
+                long backoffMillis = Math.min(maxRetryBackoffMillis,
+                        retryBackoffMillis << Math.min(consecutiveFailures - 1, 20));
+                retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+                backingOff = true;
+                throw e;
+            } finally {
+                releaseBatch(batch, unwritten);
+            }
+            return batch.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes emails one transaction each, dropping the ones that violate a constraint. Written and dropped
+     * emails are removed from the map, so it holds the unwritten ones if another failure interrupts the writes.
+     *
+     * @param emails The emails to write, by user ID.
+     */
+    private void writeOneByOne(Map<UUID, String> emails) {
+        Iterator<Map.Entry<UUID, String>> iterator = emails.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, String> entry = iterator.next();
+            UUID userId = entry.getKey();
+            try {
+                write(Map.of(userId, entry.getValue()));
+                iterator.remove();
+            } catch (DataIntegrityViolationException violation) {
+                iterator.remove();
+                failed.incrementAndGet();
+                log.warn("Dropped queued email update of user {}: {}", userId, violation.getMostSpecificCause().getMessage());
+                userSearchIndex.refresh(userId, () -> userStorage.findById(userId));
+            }
+        }
+    }
+
+    /**
+     * Writes emails in a single transaction.
+     *
+     * @param emails The emails to write, by user ID.
+     */
+    private void write(Map<UUID, String> emails) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<User> users = userStorage.findAllById(emails.keySet());
+            users.forEach(user -> user.setEmail(emails.get(user.getId())));
+            userStorage.saveAllAndFlush(users);
+            if (users.size() < emails.size()) {
+                failed.addAndGet(emails.size() - users.size());
+            }
+            flushed.addAndGet(users.size());
+        });
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Moves the oldest pending emails, up to the batch size, to the batch being flushed.
+     *
+     * @return The emails to flush, by user ID.
+     */
+    private Map<UUID, String> takeBatch() {
+        lock.lock();
+        try {
+            Map<UUID, String> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<UUID, String>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<UUID, String> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            flushing.putAll(batch);
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a flushed batch, whose written emails are now visible in the database, and puts its unwritten
+     * emails back in the queue unless a newer email of the same user is pending.
+     *
+     * @param batch     The flushed emails, by user ID.
+     * @param unwritten The emails of the batch that were neither written nor dropped, by user ID.
+     */
+    private void releaseBatch(Map<UUID, String> batch, Map<UUID, String> unwritten) {
+        lock.lock();
+        try {
+            batch.forEach((userId, email) -> {
+                flushing.remove(userId);
+                if (unwritten.containsKey(userId) && !pending.containsKey(userId)) {
+                    pending.put(userId, email);
+                    retried.incrementAndGet();
+                } else if (!email.equals(pending.get(userId))) {
+                    usersByPendingEmail.remove(email, userId);
+                }
+            });
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes a queue counter.
+     *
+     * @param name        The name of the counter, without the common prefix.
+     * @param counter     The counter value.
+     * @param description The description of the counter.
+     */
+    private void registerCounter(String name, AtomicLong counter, String description) {
+        FunctionCounter.builder("users.email.write.behind." + name, counter, AtomicLong::get)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
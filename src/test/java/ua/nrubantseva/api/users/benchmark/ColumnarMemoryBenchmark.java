@@ -0,0 +1,107 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import ua.nrubantseva.api.users.columnar.ColumnarUserStore;
+import ua.nrubantseva.api.users.model.User;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the memory footprint of users held as an entity graph, one User object with its own UUID, LocalDate
+ * and String objects per row as Hibernate materializes them, with users held by the columnar store.
+ * The Hibernate persistence context adds a loaded state snapshot and an entry per managed entity on top of the graph.
+ * Each mode runs in its own JVM, so the heap is measured without the other one.
+ * Run with: {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-Xmx4g -cp %classpath ua.nrubantseva.api.users.benchmark.ColumnarMemoryBenchmark columnar 10000000"},
+ * where the mode is one of entities, columnar or columnar-heap.
+ */
+public class ColumnarMemoryBenchmark {
+
+    private static final String[] FIRST_NAMES = {"Nadiia", "Anna", "Olena", "Ivan", "Petro", "Mariia", "Oleh",
+            "Taras", "Iryna", "Andrii", "Sofiia", "Dmytro", "Yuliia", "Serhii", "Kateryna", "Bohdan"};
+
+    private static final String[] LAST_NAMES = {"Rubantseva", "Shevchenko", "Kovalenko", "Bondarenko", "Tkachenko",
+            "Kravchenko", "Oliinyk", "Shevchuk", "Polishchuk", "Lysenko", "Marchenko", "Melnyk"};
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "columnar";
+        int userCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        long start = System.nanoTime();
+        Runnable rangeScan;
+        if (mode.equals("entities")) {
+            List<User> users = new ArrayList<>(userCount);
+            generate(userCount, users::add);
+            rangeScan = () -> users.stream()
+                    .filter(user -> !user.getBirthDate().isBefore(LocalDate.of(1990, 1, 1))
+                            && !user.getBirthDate().isAfter(LocalDate.of(1990, 1, 31)))
+                    .count();
+        } else {
+            var store = new ColumnarUserStore(userCount, !mode.equals("columnar-heap"));
+            generate(userCount, store::save);
+            rangeScan = () -> store.findByBirthDateBetween(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 31));
+        }
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+        System.out.printf("%s, %d users loaded in %.1f s%n", mode, userCount, loadSeconds);
+        System.out.printf("heap   %,15d bytes %8.1f bytes/user%n", heap, (double) heap / userCount);
+        System.out.printf("direct %,15d bytes %8.1f bytes/user%n", direct, (double) direct / userCount);
+        System.out.printf("total  %,15d bytes %8.1f bytes/user%n", heap + direct, (double) (heap + direct) / userCount);
+
+        for (int i = 0; i < 3; i++) {
+            rangeScan.run();
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            rangeScan.run();
+        }
+        System.out.printf("one month range search: %.1f ms%n", (System.nanoTime() - start) / 1e7);
+    }
+
+    /**
+     * Generates users the way they are read from the database: every string is a new instance decoded from bytes.
+     *
+     * @param userCount The number of users to generate.
+     * @param consumer  The consumer of the users.
+     */
+    private static void generate(int userCount, java.util.function.Consumer<User> consumer) {
+        var random = new Random(42);
+        for (int i = 0; i < userCount; i++) {
+            String firstName = decode(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+            String lastName = decode(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+            String email = decode(firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@gmail.com");
+            String phone = random.nextBoolean() ? decode("+380" + (500_000_000 + random.nextInt(499_999_999))) : null;
+            consumer.accept(new User(new UUID(random.nextLong(), random.nextLong()), email, firstName, lastName,
+                    LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25_000)), null, phone));
+        }
+    }
+
+    private static String decode(String value) {
+        return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
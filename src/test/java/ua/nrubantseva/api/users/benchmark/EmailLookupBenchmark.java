@@ -0,0 +1,71 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.nrubantseva.api.users.Main;
+import ua.nrubantseva.api.users.repository.UserRepository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Measures the latency of the lookup by email while the users table grows to each of the given sizes.
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ua.nrubantseva.api.users.benchmark.EmailLookupBenchmark -Dexec.args="10000 100000 1000000"}
+ */
+public class EmailLookupBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final int LOOKUPS = 20_000;
+
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[]{"10000", "100000", "1000000"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN")) {
+            var jdbcTemplate = context.getBean(JdbcTemplate.class);
+            var transactionTemplate = context.getBean(TransactionTemplate.class);
+            var userRepository = context.getBean(UserRepository.class);
+            var random = new Random(42);
+
+            System.out.printf("%12s %16s %16s%n", "users", "avg lookup us", "hit rate");
+            int inserted = 0;
+            for (String size : sizes) {
+                int target = Integer.parseInt(size);
+                while (inserted < target) {
+                    List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                    for (int i = inserted; i < Math.min(target, inserted + BATCH_SIZE); i++) {
+                        batch.add(new Object[]{UUID.randomUUID(), email(i), "First", "Last",
+                                Date.valueOf(LocalDate.of(1940, 1, 1).plusDays(random.nextInt(25_000)))});
+                    }
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate("INSERT INTO \"user\" "
+                            + "(\"id\", \"email\", \"first_name\", \"last_name\", \"birth_date\") VALUES (?, ?, ?, ?, ?)", batch));
+                    inserted += batch.size();
+                }
+
+                for (int i = 0; i < LOOKUPS / 10; i++) {
+                    userRepository.findByEmail(email(random.nextInt(inserted)));
+                }
+                int hits = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    hits += userRepository.findByEmail(email(random.nextInt(inserted))).isPresent() ? 1 : 0;
+                }
+                double averageMicros = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+                System.out.printf("%12d %16.1f %15.0f%%%n", inserted, averageMicros, 100.0 * hits / LOOKUPS);
+            }
+        }
+    }
+
+    private static String email(int index) {
+        return "user" + index + "@example.com";
+    }
+}
@@ -0,0 +1,78 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.nrubantseva.api.users.Main;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures write throughput and restart time of the file storage mode for the given numbers of users.
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ua.nrubantseva.api.users.benchmark.FileStorageBenchmark -Dexec.args="1000000 10000000"}
+ */
+public class FileStorageBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String[] sizes = args.length > 0 ? args : new String[]{"1000000", "10000000"};
+        System.out.printf("%12s %14s %12s %12s %12s%n", "users", "inserts/s", "close ms", "restart ms", "file MB");
+        for (String size : sizes) {
+            run(Integer.parseInt(size));
+        }
+    }
+
+    private static void run(int userCount) throws Exception {
+        Path directory = Files.createTempDirectory("users-file-storage");
+        Path database = directory.resolve("users");
+
+        ConfigurableApplicationContext context = start(database);
+        var jdbcTemplate = context.getBean(JdbcTemplate.class);
+        var transactionTemplate = context.getBean(TransactionTemplate.class);
+        var random = new Random(42);
+        long insertStart = System.nanoTime();
+        for (int offset = 0; offset < userCount; offset += BATCH_SIZE) {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = offset; i < Math.min(userCount, offset + BATCH_SIZE); i++) {
+                batch.add(new Object[]{UUID.randomUUID(), "user" + i + "@example.com", "First" + random.nextInt(1000),
+                        "Last" + random.nextInt(10_000), Date.valueOf(LocalDate.of(1940, 1, 1).plusDays(random.nextInt(25_000)))});
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate("INSERT INTO \"user\" "
+                    + "(\"id\", \"email\", \"first_name\", \"last_name\", \"birth_date\") VALUES (?, ?, ?, ?, ?)", batch));
+        }
+        double insertSeconds = (System.nanoTime() - insertStart) / 1e9;
+
+        long closeStart = System.nanoTime();
+        context.close();
+        long closeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - closeStart);
+
+        long restartStart = System.nanoTime();
+        ConfigurableApplicationContext restarted = start(database);
+        long restartMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restartStart);
+        restarted.close();
+
+        long fileBytes = Files.size(directory.resolve("users.mv.db"));
+        System.out.printf("%12d %14.0f %12d %12d %12d%n", userCount, userCount / insertSeconds,
+                closeMillis, restartMillis, fileBytes / (1024 * 1024));
+    }
+
+    private static ConfigurableApplicationContext start(Path database) {
+        return new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .profiles("file")
+                .run("--user.storage.file.path=" + database, "--logging.level.root=WARN",
+                        "--logging.level.ua.nrubantseva=INFO");
+    }
+}
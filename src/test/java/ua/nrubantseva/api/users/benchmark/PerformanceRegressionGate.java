@@ -0,0 +1,404 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ua.nrubantseva.api.users.Main;
+import ua.nrubantseva.api.users.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a fixed HTTP scenario against the application loaded with a synthetic dataset and fails if the throughput
+ * or the p99 latency of any operation regresses beyond a threshold compared with the stored baseline.
+ * Client threads issue a fixed mix of lookups by email, one month range searches, prefix searches and creations
+ * back to back, each from its own seeded random sequence, so every run sends the same kind of requests.
+ * The baseline depends on the machine, so it stores the CPU count, JVM arguments and scenario parameters it was
+ * recorded with, and the gate refuses to compare a run made in a different environment: the baseline has to be
+ * recorded again with 'perf.update-baseline' on the machine running the gate. Regressions and environment
+ * mismatches are reported on stderr with a non-zero exit code.
+ * Run with: {@code mvn -Pperf-gate verify}, see the profile for the available properties.
+ */
+public class PerformanceRegressionGate {
+
+    private enum Operation {
+
+        BY_EMAIL("by-email", 50),
+        RANGE("range", 20),
+        SEARCH("search", 20),
+        CREATE("create", 10);
+
+        private final String key;
+
+        private final int weight;
+
+        Operation(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    private static final int TOTAL_WEIGHT = Arrays.stream(Operation.values()).mapToInt(operation -> operation.weight).sum();
+
+    /**
+     * Offset of the dataset indexes of the users created by each client, keeping their emails unique.
+     */
+    private static final long CREATED_USERS_PER_CLIENT = 1_000_000_000L;
+
+    /**
+     * Prefix of the baseline properties describing the environment the baseline was recorded in.
+     */
+    private static final String ENVIRONMENT_PREFIX = "environment.";
+
+    /**
+     * Exit code of a run whose results regressed.
+     */
+    private static final int EXIT_REGRESSION = 1;
+
+    /**
+     * Exit code of a run that cannot be compared with the baseline.
+     */
+    private static final int EXIT_ENVIRONMENT_MISMATCH = 2;
+
+    public static void main(String[] args) throws Exception {
+        long seed = Long.getLong("perf.seed", 42);
+        int userCount = Integer.getInteger("perf.users", 100_000);
+        int clients = Integer.getInteger("perf.clients", 4);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("perf.warmup-seconds", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("perf.duration-seconds", 30));
+        Path baselinePath = Path.of(System.getProperty("perf.baseline", "src/test/resources/perf-baseline.properties"));
+        double maxThroughputDrop = Double.parseDouble(System.getProperty("perf.max-throughput-drop", "0.25"));
+        double maxP99Increase = Double.parseDouble(System.getProperty("perf.max-p99-increase", "0.5"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("perf.max-error-rate", "0.01"));
+        boolean updateBaseline = Boolean.getBoolean("perf.update-baseline");
+        String profiles = System.getProperty("perf.profiles", "");
+
+        Map<String, String> environment = environment(userCount, clients, profiles);
+        Properties baseline = null;
+        if (!updateBaseline) {
+            baseline = readBaseline(baselinePath);
+            List<String> mismatches = compareEnvironment(baseline, environment);
+            if (!mismatches.isEmpty()) {
+                mismatches.forEach(mismatch -> System.err.println("ENVIRONMENT MISMATCH: " + mismatch));
+                System.err.println("The baseline " + baselinePath + " was recorded in another environment and cannot"
+                        + " be compared, record one on this machine with -Dperf.update-baseline=true");
+                System.exit(EXIT_ENVIRONMENT_MISMATCH);
+            }
+        }
+
+        var generator = new SyntheticUserGenerator(seed);
+        Map<Operation, Result> results;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .profiles(profiles.isBlank() ? new String[0] : profiles.split(","))
+                .run("--server.port=0", "--logging.level.root=WARN", "--logging.level.org.apache.catalina.loader=ERROR")) {
+            long start = System.nanoTime();
+            SyntheticUserLoader.load(context, generator, userCount);
+            System.out.printf("loaded %d users in %.1f s%n", userCount, (System.nanoTime() - start) / 1e9);
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            var scenario = new Scenario(URI.create("http://localhost:" + port), generator, seed, userCount);
+            results = scenario.run(clients, warmup, duration);
+        }
+
+        System.out.printf("%-10s %12s %10s %10s %8s%n", "operation", "requests/s", "p50 ms", "p99 ms", "errors");
+        results.forEach((operation, result) -> System.out.printf("%-10s %12.1f %10.2f %10.2f %8d%n",
+                operation.key, result.throughput, result.p50Millis, result.p99Millis, result.errors));
+
+        if (updateBaseline) {
+            writeBaseline(baselinePath, results, environment, duration);
+            System.out.println("baseline written to " + baselinePath.toAbsolutePath());
+            return;
+        }
+
+        List<String> regressions = compare(baseline, results, maxThroughputDrop, maxP99Increase, maxErrorRate);
+        if (!regressions.isEmpty()) {
+            regressions.forEach(regression -> System.err.println("REGRESSION: " + regression));
+            System.exit(EXIT_REGRESSION);
+        }
+        System.out.println("no regression compared with " + baselinePath);
+    }
+
+    /**
+     * Describes the environment of the run: the parts of the machine, JVM and scenario the results depend on.
+     * The scenario properties passed to the JVM are left out of its arguments, since they are listed separately.
+     */
+    private static Map<String, String> environment(int userCount, int clients, String profiles) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put(ENVIRONMENT_PREFIX + "cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        environment.put(ENVIRONMENT_PREFIX + "java", String.valueOf(Runtime.version().feature()));
+        environment.put(ENVIRONMENT_PREFIX + "jvm-args", ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(argument -> !argument.startsWith("-Dperf."))
+                .collect(Collectors.joining(" ")));
+        environment.put(ENVIRONMENT_PREFIX + "users", String.valueOf(userCount));
+        environment.put(ENVIRONMENT_PREFIX + "clients", String.valueOf(clients));
+        environment.put(ENVIRONMENT_PREFIX + "profiles", profiles);
+        return environment;
+    }
+
+    private static List<String> compareEnvironment(Properties baseline, Map<String, String> environment) {
+        List<String> mismatches = new ArrayList<>();
+        environment.forEach((key, value) -> {
+            String recorded = baseline.getProperty(key);
+            if (!value.equals(recorded)) {
+                mismatches.add(String.format("%s is '%s' but the baseline was recorded with '%s'",
+                        key.substring(ENVIRONMENT_PREFIX.length()), value, recorded == null ? "unknown" : recorded));
+            }
+        });
+        return mismatches;
+    }
+
+    private static List<String> compare(Properties baseline, Map<Operation, Result> results, double maxThroughputDrop,
+                                        double maxP99Increase, double maxErrorRate) {
+        List<String> regressions = new ArrayList<>();
+        results.forEach((operation, result) -> {
+            double baselineThroughput = Double.parseDouble(baseline.getProperty(operation.key + ".throughput"));
+            double baselineP99 = Double.parseDouble(baseline.getProperty(operation.key + ".p99-ms"));
+            if (result.throughput < baselineThroughput * (1 - maxThroughputDrop)) {
+                regressions.add(String.format("%s throughput %.1f requests/s is more than %.0f%% below the baseline %.1f",
+                        operation.key, result.throughput, maxThroughputDrop * 100, baselineThroughput));
+            }
+            if (result.p99Millis > baselineP99 * (1 + maxP99Increase)) {
+                regressions.add(String.format("%s p99 %.2f ms is more than %.0f%% above the baseline %.2f ms",
+                        operation.key, result.p99Millis, maxP99Increase * 100, baselineP99));
+            }
+            if (result.errors > result.requests * maxErrorRate) {
+                regressions.add(String.format("%s failed %d of %d requests", operation.key, result.errors,
+                        result.requests));
+            }
+        });
+        return regressions;
+    }
+
+    private static Properties readBaseline(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IllegalStateException("No baseline at " + path.toAbsolutePath()
+                    + ", record one with -Dperf.update-baseline=true");
+        }
+        var baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            baseline.load(reader);
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Path path, Map<Operation, Result> results, Map<String, String> environment,
+                                      Duration duration) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Performance baseline of PerformanceRegressionGate, " + duration.toSeconds() + " s measured."
+                + " It is only compared with runs in the same environment.");
+        lines.add("# Record it again with: mvn -Pperf-gate verify -Dperf.update-baseline=true");
+        environment.forEach((key, value) -> lines.add(key + "=" + value.replace("\\", "\\\\")));
+        results.forEach((operation, result) -> {
+            lines.add(String.format("%s.throughput=%.1f", operation.key, result.throughput));
+            lines.add(String.format("%s.p99-ms=%.2f", operation.key, result.p99Millis));
+        });
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    private record Result(long requests, long errors, double throughput, double p50Millis, double p99Millis) {
+    }
+
+    /**
+     * Issues the requests of the scenario and records their latencies.
+     */
+    private static class Scenario {
+
+        private final URI baseUri;
+
+        private final SyntheticUserGenerator generator;
+
+        private final long seed;
+
+        private final int userCount;
+
+        private final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        private Scenario(URI baseUri, SyntheticUserGenerator generator, long seed, int userCount) {
+            this.baseUri = baseUri;
+            this.generator = generator;
+            this.seed = seed;
+            this.userCount = userCount;
+        }
+
+        private Map<Operation, Result> run(int clients, Duration warmup, Duration duration) throws Exception {
+            long measureFrom = System.nanoTime() + warmup.toNanos();
+            long measureTo = measureFrom + duration.toNanos();
+            ExecutorService executor = Executors.newFixedThreadPool(clients);
+            try {
+                List<Future<Map<Operation, Latencies>>> futures = new ArrayList<>();
+                for (int i = 0; i < clients; i++) {
+                    int clientIndex = i;
+                    futures.add(executor.submit(() -> runClient(clientIndex, measureFrom, measureTo)));
+                }
+
+                Map<Operation, Latencies> merged = new EnumMap<>(Operation.class);
+                for (var future : futures) {
+                    future.get().forEach((operation, latencies) ->
+                            merged.computeIfAbsent(operation, key -> new Latencies()).addAll(latencies));
+                }
+                Map<Operation, Result> results = new EnumMap<>(Operation.class);
+                merged.forEach((operation, latencies) -> results.put(operation, latencies.result(duration)));
+                return results;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private Map<Operation, Latencies> runClient(int clientIndex, long measureFrom, long measureTo) {
+            var random = new SplittableRandom(seed + 1 + clientIndex);
+            long createdIndex = userCount + (clientIndex + 1) * CREATED_USERS_PER_CLIENT;
+            Map<Operation, Latencies> latencies = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new Latencies());
+            }
+
+            long now;
+            while ((now = System.nanoTime()) < measureTo) {
+                Operation operation = nextOperation(random);
+                HttpRequest request = switch (operation) {
+                    case BY_EMAIL -> get("/users/by-email?email="
+                            + encode(generator.user(random.nextInt(userCount)).getEmail()));
+                    case RANGE -> rangeRequest(random);
+                    case SEARCH -> get("/users/search?limit=20&q="
+                            + encode(generator.user(random.nextInt(userCount)).getLastName().substring(0, 3)));
+                    case CREATE -> createRequest(generator.user(createdIndex++));
+                };
+                boolean success;
+                try {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    success = status >= 200 && status < 300;
+                } catch (IOException e) {
+                    success = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (now >= measureFrom) {
+                    latencies.get(operation).add(System.nanoTime() - now, success);
+                }
+            }
+            return latencies;
+        }
+
+        private HttpRequest rangeRequest(SplittableRandom random) {
+            LocalDate min = generator.minBirthDate();
+            LocalDate fromDate = min.plusDays(random.nextLong(generator.maxBirthDate().toEpochDay() - min.toEpochDay() - 30));
+            return get("/users?fromDate=" + fromDate + "&toDate=" + fromDate.plusDays(30));
+        }
+
+        private HttpRequest createRequest(User user) {
+            StringBuilder form = new StringBuilder()
+                    .append("email=").append(encode(user.getEmail()))
+                    .append("&firstName=").append(encode(user.getFirstName()))
+                    .append("&lastName=").append(encode(user.getLastName()))
+                    .append("&birthDate=").append(user.getBirthDate());
+            if (user.getAddress() != null) {
+                form.append("&address=").append(encode(user.getAddress()));
+            }
+            if (user.getPhone() != null) {
+                form.append("&phone=").append(encode(user.getPhone()));
+            }
+            return HttpRequest.newBuilder(baseUri.resolve("/users"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+                    .build();
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(baseUri.resolve(path)).GET().build();
+        }
+
+        private static Operation nextOperation(SplittableRandom random) {
+            int value = random.nextInt(TOTAL_WEIGHT);
+            for (Operation operation : Operation.values()) {
+                value -= operation.weight;
+                if (value < 0) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        private static String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Latencies of the successful requests of one operation, in nanoseconds.
+     */
+    private static class Latencies {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        private long errors;
+
+        private void add(long nanos, boolean success) {
+            if (!success) {
+                errors++;
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        private void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i], true);
+            }
+            errors += other.errors;
+        }
+
+        private Result result(Duration duration) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return new Result(size + errors, errors, size / (duration.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import ua.nrubantseva.api.users.config.BinaryFormatsConfig;
+import ua.nrubantseva.api.users.converter.UserCompactHttpMessageConverter;
+import ua.nrubantseva.api.users.converter.UserMediaTypes;
+import ua.nrubantseva.api.users.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares the size and encoding throughput of the response formats for a List of User.
+ * Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ua.nrubantseva.api.users.benchmark.ResponseEncodingBenchmark -Dexec.args="10000"}
+ */
+public class ResponseEncodingBenchmark {
+
+    private static final Type USER_LIST_TYPE = new ParameterizedTypeReference<List<User>>() {
+    }.getType();
+
+    public static void main(String[] args) throws IOException {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        List<User> users = createUsers(userCount);
+
+        var binaryFormats = new BinaryFormatsConfig();
+        Map<MediaType, GenericHttpMessageConverter<Object>> converters = new LinkedHashMap<>();
+        converters.put(MediaType.APPLICATION_JSON, new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build()));
+        converters.put(MediaType.APPLICATION_CBOR, binaryFormats.cborHttpMessageConverter());
+        converters.put(MediaType.valueOf(UserMediaTypes.APPLICATION_SMILE_VALUE), binaryFormats.smileHttpMessageConverter());
+        converters.put(UserMediaTypes.APPLICATION_USERS_COMPACT, new UserCompactHttpMessageConverter());
+
+        int jsonSize = encode(converters.get(MediaType.APPLICATION_JSON), MediaType.APPLICATION_JSON, users).length;
+        System.out.printf("%d users, %d iterations%n", userCount, iterations);
+        System.out.printf("%-32s %12s %8s %14s%n", "media type", "bytes", "vs json", "users/s");
+        for (var entry : converters.entrySet()) {
+            for (int i = 0; i < iterations / 5 + 1; i++) {
+                encode(entry.getValue(), entry.getKey(), users);
+            }
+            int size = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                size = encode(entry.getValue(), entry.getKey(), users).length;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-32s %12d %7.0f%% %14.0f%n", entry.getKey(), size,
+                    100.0 * size / jsonSize, userCount * (double) iterations / seconds);
+        }
+    }
+
+    private static byte[] encode(GenericHttpMessageConverter<Object> converter, MediaType mediaType, List<User> users)
+            throws IOException {
+        var buffer = new ByteArrayOutputStream();
+        var headers = new HttpHeaders();
+        converter.write(users, USER_LIST_TYPE, mediaType, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        });
+        return buffer.toByteArray();
+    }
+
+    private static List<User> createUsers(int count) {
+        var random = new Random(42);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User(UUID.randomUUID(), "user" + i + "@example.com", "First" + random.nextInt(1000),
+                    "Last" + random.nextInt(10_000), LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)),
+                    i % 3 == 0 ? "Street " + random.nextInt(500) + ", Kyiv" : null,
+                    i % 2 == 0 ? "+380" + (100_000_000 + random.nextInt(899_999_999)) : null));
+        }
+        return users;
+    }
+}
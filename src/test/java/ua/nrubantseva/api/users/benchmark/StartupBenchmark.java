@@ -0,0 +1,96 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from process launch to the first successful 'GET /users' for each startup configuration.
+ * Requires the artifacts of 'mvn -Pfast-startup package', then run with: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=ua.nrubantseva.api.users.benchmark.StartupBenchmark -Dexec.args="5"}
+ */
+public class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path target = Path.of(args.length > 1 ? args[1] : "target");
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String fatJar = target.resolve("users-api-1.0-SNAPSHOT-exec.jar").toString();
+        String thinJar = target.resolve("users-api-1.0-SNAPSHOT.jar").toString();
+
+        Map<String, List<String>> configurations = new LinkedHashMap<>();
+        configurations.put("default", List.of(java, "-jar", fatJar));
+        configurations.put("thin-jar", List.of(java, "-jar", thinJar));
+        configurations.put("aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", thinJar));
+        configurations.put("aot+cds", List.of(java, "-XX:SharedArchiveFile=" + target.resolve("users-api.jsa"),
+                "-Dspring.aot.enabled=true", "-jar", thinJar));
+        configurations.put("fast-startup", List.of(java, "-XX:SharedArchiveFile=" + target.resolve("users-api.jsa"),
+                "-Dspring.aot.enabled=true", "-Dspring.profiles.active=fast-startup", "-jar", thinJar));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        System.out.printf("%-14s %10s %10s %10s%n", "configuration", "min ms", "avg ms", "max ms");
+        for (var configuration : configurations.entrySet()) {
+            long[] timings = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                timings[run] = measure(client, configuration.getValue());
+            }
+            System.out.printf("%-14s %10d %10d %10d%n", configuration.getKey(), Arrays.stream(timings).min().orElse(0),
+                    (long) Arrays.stream(timings).average().orElse(0), Arrays.stream(timings).max().orElse(0));
+        }
+    }
+
+    private static long measure(HttpClient client, List<String> command) throws Exception {
+        int port = freePort();
+        List<String> fullCommand = new ArrayList<>(command);
+        fullCommand.add(fullCommand.size() - 2, "-Dserver.port=" + port);
+        URI uri = URI.create("http://localhost:" + port + "/users?fromDate=2000-01-01&toDate=2000-01-02");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(fullCommand)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log")))
+                .start();
+        try {
+            while (System.nanoTime() - start < STARTUP_TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with code " + process.exitValue());
+                }
+                try {
+                    HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).build(),
+                            HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Application did not serve GET /users within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of realistic users for benchmarks.
+ * The user at a given index depends only on the seed and the index, so a dataset is reproduced exactly
+ * across runs and any of its users can be regenerated without keeping the dataset in memory.
+ * Ages are skewed towards young adults like the population of a consumer service, names and addresses
+ * have natural length variation, and about a third of the users have no address or no phone.
+ * Every email contains the index of its user, so the emails of a dataset are unique.
+ */
+public class SyntheticUserGenerator {
+
+    /**
+     * Date the ages are computed from, fixed so the dataset does not change over time.
+     */
+    public static final LocalDate DEFAULT_REFERENCE_DATE = LocalDate.of(2024, 1, 1);
+
+    private static final String[] FIRST_NAMES = {"Ivan", "Anna", "Oleh", "Olena", "Petro", "Iryna", "Taras", "Mariia",
+            "Andrii", "Sofiia", "Dmytro", "Yuliia", "Serhii", "Kateryna", "Bohdan", "Nadiia", "Yaroslav", "Oksana",
+            "Volodymyr", "Liudmyla", "Maksym", "Viktoriia", "Oleksandr", "Khrystyna", "Yevhen", "Daryna", "Ihor",
+            "Alla", "Roman", "Ilona", "Vasyl", "Zoia", "Mykhailo", "Svitlana", "Stanislav", "Oleksandra", "Lev",
+            "Ruslana", "Kostiantyn", "Inna", "Artem", "Yevheniia", "Denys", "Halyna", "Vitalii", "Valentyna"};
+
+    private static final String[] LAST_NAMES = {"Rubantseva", "Shevchenko", "Kovalenko", "Bondarenko", "Tkachenko",
+            "Kravchenko", "Oliinyk", "Shevchuk", "Polishchuk", "Lysenko", "Marchenko", "Melnyk", "Boiko", "Koval",
+            "Savchenko", "Rudenko", "Moroz", "Pavlenko", "Kovalchuk", "Petrenko", "Klymenko", "Ponomarenko", "Ivanov",
+            "Zinchenko", "Kharchenko", "Levchenko", "Tkachuk", "Hrytsenko", "Vasylenko", "Lytvynenko", "Sydorenko",
+            "Kuzmenko", "Dovzhenko", "Yaremchuk", "Prokopenko", "Nazarenko", "Vovk", "Fedorchuk", "Yakymenko",
+            "Mazur", "Holovko", "Khmelnytska", "Ostapchuk-Verbytska", "Dub", "Semeniuk", "Karpenko"};
+
+    private static final String[] CITIES = {"Kyiv", "Kharkiv", "Odesa", "Dnipro", "Lviv", "Zaporizhzhia", "Vinnytsia",
+            "Poltava", "Chernihiv", "Ivano-Frankivsk", "Uzhhorod", "Ternopil", "Bila Tserkva", "Kropyvnytskyi"};
+
+    private static final int[] CITY_WEIGHTS = {30, 12, 10, 9, 8, 6, 5, 4, 4, 3, 2, 3, 2, 2};
+
+    private static final String[] STREETS = {"Khreshchatyk", "Shevchenka", "Franka", "Lesi Ukrainky", "Hrushevskoho",
+            "Sobornosti", "Nezalezhnosti", "Peremohy", "Sadova", "Naberezhna", "Heroiv Maidanu", "Kotsiubynskoho",
+            "Mykhaila Hrushevskoho", "Bohdana Khmelnytskoho", "Yaroslaviv Val", "Lypova"};
+
+    private static final String[] EMAIL_DOMAINS = {"gmail.com", "ukr.net", "outlook.com", "yahoo.com", "i.ua",
+            "icloud.com", "meta.ua", "proton.me", "company.com.ua"};
+
+    private static final int[] EMAIL_DOMAIN_WEIGHTS = {45, 15, 12, 8, 5, 5, 3, 2, 5};
+
+    private static final int[] PHONE_OPERATOR_CODES = {50, 63, 66, 67, 68, 73, 93, 95, 96, 97, 98, 99};
+
+    /**
+     * Lower bounds of the age brackets, in years, the last value being the upper bound of the last bracket.
+     */
+    private static final int[] AGE_BRACKETS = {18, 25, 35, 45, 55, 65, 90};
+
+    /**
+     * Share of the users in each age bracket, in percent.
+     */
+    private static final int[] AGE_BRACKET_WEIGHTS = {22, 31, 21, 13, 8, 5};
+
+    private static final int ADDRESS_PERCENT = 70;
+
+    private static final int PHONE_PERCENT = 65;
+
+    private final long seed;
+
+    private final LocalDate referenceDate;
+
+    /**
+     * Constructs a new SyntheticUserGenerator computing ages from the default reference date.
+     *
+     * @param seed The seed of the dataset.
+     */
+    public SyntheticUserGenerator(long seed) {
+        this(seed, DEFAULT_REFERENCE_DATE);
+    }
+
+    /**
+     * Constructs a new SyntheticUserGenerator.
+     *
+     * @param seed          The seed of the dataset.
+     * @param referenceDate The date the ages are computed from.
+     */
+    public SyntheticUserGenerator(long seed, LocalDate referenceDate) {
+        this.seed = seed;
+        this.referenceDate = referenceDate;
+    }
+
+    /**
+     * Generates the user at the given index of the dataset.
+     *
+     * @param index The index of the user.
+     * @return The user, always the same for the same seed and index.
+     */
+    public User user(long index) {
+        var random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+        var id = new UUID((random.nextLong() & ~0xF000L) | 0x4000L,
+                (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+        String firstName = pick(random, FIRST_NAMES);
+        String lastName = pick(random, LAST_NAMES);
+        return new User(id, email(random, firstName, lastName, index), firstName, lastName, birthDate(random),
+                random.nextInt(100) < ADDRESS_PERCENT ? address(random) : null,
+                random.nextInt(100) < PHONE_PERCENT ? phone(random) : null);
+    }
+
+    /**
+     * Returns the earliest birth date the generator produces.
+     *
+     * @return The earliest birth date.
+     */
+    public LocalDate minBirthDate() {
+        return referenceDate.minusYears(AGE_BRACKETS[AGE_BRACKETS.length - 1]).plusDays(1);
+    }
+
+    /**
+     * Returns the latest birth date the generator produces.
+     *
+     * @return The latest birth date.
+     */
+    public LocalDate maxBirthDate() {
+        return referenceDate.minusYears(AGE_BRACKETS[0]);
+    }
+
+    private LocalDate birthDate(SplittableRandom random) {
+        int bracket = weighted(random, AGE_BRACKET_WEIGHTS);
+        LocalDate youngest = referenceDate.minusYears(AGE_BRACKETS[bracket]);
+        LocalDate oldest = referenceDate.minusYears(AGE_BRACKETS[bracket + 1]).plusDays(1);
+        return oldest.plusDays(random.nextLong(youngest.toEpochDay() - oldest.toEpochDay() + 1));
+    }
+
+    private static String email(SplittableRandom random, String firstName, String lastName, long index) {
+        String first = firstName.toLowerCase(Locale.ROOT);
+        String last = lastName.toLowerCase(Locale.ROOT).replace("-", "");
+        String localPart = switch (random.nextInt(5)) {
+            case 0 -> first + "." + last;
+            case 1 -> first + last;
+            case 2 -> first.charAt(0) + "." + last;
+            case 3 -> first + "_" + last;
+            default -> last + "." + first;
+        };
+        return localPart + index + "@" + EMAIL_DOMAINS[weighted(random, EMAIL_DOMAIN_WEIGHTS)];
+    }
+
+    private static String address(SplittableRandom random) {
+        var address = new StringBuilder()
+                .append("vul. ").append(pick(random, STREETS)).append(' ').append(1 + random.nextInt(150));
+        if (random.nextInt(100) < 60) {
+            address.append(", apt. ").append(1 + random.nextInt(300));
+        }
+        return address.append(", ").append(CITIES[weighted(random, CITY_WEIGHTS)])
+                .append(", ").append(String.format("%05d", 1_000 + random.nextInt(90_000)))
+                .toString();
+    }
+
+    private static String phone(SplittableRandom random) {
+        return String.format("+380%02d%07d", PHONE_OPERATOR_CODES[random.nextInt(PHONE_OPERATOR_CODES.length)],
+                random.nextInt(10_000_000));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static int weighted(SplittableRandom random, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            value -= weights[i];
+            if (value < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
@@ -0,0 +1,54 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import org.junit.jupiter.api.Test;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyntheticUserGeneratorTest {
+
+    private final SyntheticUserGenerator generator = new SyntheticUserGenerator(42);
+
+    /**
+     * Tests that a user depends only on the seed and the index.
+     */
+    @Test
+    void user_should_return_same_user_when_seed_and_index_are_same() {
+        assertThat(new SyntheticUserGenerator(42).user(1234)).isEqualTo(generator.user(1234));
+        assertThat(new SyntheticUserGenerator(43).user(1234)).isNotEqualTo(generator.user(1234));
+        assertThat(generator.user(1235)).isNotEqualTo(generator.user(1234));
+    }
+
+    /**
+     * Tests that the users are adults with unique emails and IDs, and that ages are skewed towards young adults.
+     */
+    @Test
+    void user_should_generate_unique_adults_skewed_towards_young_adults() {
+        int count = 10_000;
+        Set<String> emails = new HashSet<>();
+        Set<Object> ids = new HashSet<>();
+        int underThirtyFive = 0;
+        int overSixtyFive = 0;
+        for (int i = 0; i < count; i++) {
+            User user = generator.user(i);
+            emails.add(user.getEmail());
+            ids.add(user.getId());
+            int age = Period.between(user.getBirthDate(), SyntheticUserGenerator.DEFAULT_REFERENCE_DATE).getYears();
+            assertThat(age).isBetween(18, 89);
+            assertThat(user.getBirthDate()).isBetween(generator.minBirthDate(), generator.maxBirthDate());
+            underThirtyFive += age < 35 ? 1 : 0;
+            overSixtyFive += age >= 65 ? 1 : 0;
+        }
+
+        assertThat(emails).hasSize(count);
+        assertThat(ids).hasSize(count);
+        assertThat(underThirtyFive).isBetween(count / 2 - count / 20, count / 2 + count / 20);
+        assertThat(overSixtyFive).isLessThan(count / 10);
+        assertThat(generator.minBirthDate()).isEqualTo(LocalDate.of(1934, 1, 2));
+    }
+}
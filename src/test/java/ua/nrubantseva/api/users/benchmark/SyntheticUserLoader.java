@@ -0,0 +1,72 @@
+package ua.nrubantseva.api.users.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.nrubantseva.api.users.columnar.ColumnarUserStorage;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserStorage;
+import ua.nrubantseva.api.users.search.UserSearchIndex;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk-loads a synthetic dataset into the user repository of a running application.
+ * With the JPA repository the users are inserted with batched JDBC statements, bypassing the persistence context,
+ * and the second-level cache is cleared afterwards so it cannot serve results from before the load.
+ * With the columnar storage they are saved in batches. The search index is updated in both cases.
+ */
+public final class SyntheticUserLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final String INSERT_SQL = "INSERT INTO \"user\" (\"id\", \"email\", \"first_name\", \"last_name\", "
+            + "\"birth_date\", \"address\", \"phone\", \"active\") VALUES (?, ?, ?, ?, ?, ?, ?, TRUE)";
+
+    private SyntheticUserLoader() {
+    }
+
+    /**
+     * Loads the users at the indexes from 0 to count - 1 of the dataset.
+     *
+     * @param context   The context of the running application.
+     * @param generator The generator of the dataset.
+     * @param count     The number of users to load.
+     */
+    public static void load(ApplicationContext context, SyntheticUserGenerator generator, int count) {
+        var userStorage = context.getBean(UserStorage.class);
+        var searchIndex = context.getBean(UserSearchIndex.class);
+        boolean columnar = userStorage instanceof ColumnarUserStorage;
+
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            List<User> batch = new ArrayList<>(BATCH_SIZE);
+            for (int index = from; index < Math.min(count, from + BATCH_SIZE); index++) {
+                batch.add(generator.user(index));
+            }
+            if (columnar) {
+                userStorage.saveAllAndFlush(batch);
+            } else {
+                insert(context, batch);
+            }
+            batch.forEach(searchIndex::index);
+        }
+
+        if (!columnar) {
+            context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getCache().evictAllRegions();
+        }
+    }
+
+    private static void insert(ApplicationContext context, List<User> batch) {
+        var jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = batch.stream()
+                .map(user -> new Object[]{user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                        Date.valueOf(user.getBirthDate()), user.getAddress(), user.getPhone()})
+                .toList();
+        context.getBean(TransactionTemplate.class)
+                .executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+    }
+}
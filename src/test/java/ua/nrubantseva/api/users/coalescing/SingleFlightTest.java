@@ -0,0 +1,149 @@
+package ua.nrubantseva.api.users.coalescing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    /**
+     * Tests that calls with the same key from concurrent threads run the supplier once and share its result.
+     */
+    @Test
+    void executeAsync_should_share_result_when_calls_are_concurrent() throws Exception {
+        var singleFlight = new SingleFlight<String, Object>();
+        var executions = new AtomicInteger();
+        var leader = new CompletableFuture<Object>();
+        var start = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<CompletableFuture<Object>>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                calls.add(executor.submit(() -> {
+                    start.await();
+                    return singleFlight.executeAsync("range", () -> {
+                        executions.incrementAndGet();
+                        return leader;
+                    });
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (Future<CompletableFuture<Object>> call : calls) {
+                results.add(call.get(5, TimeUnit.SECONDS));
+            }
+
+            Object shared = new Object();
+            leader.complete(shared);
+
+            for (CompletableFuture<Object> result : results) {
+                assertThat(result).isCompletedWithValue(shared);
+            }
+            assertThat(executions).hasValue(1);
+            assertThat(singleFlight.getLeaders()).isEqualTo(1);
+            assertThat(singleFlight.getFollowers()).isEqualTo(callers - 1);
+            assertThat(singleFlight.getInFlight()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that sequential calls are not coalesced.
+     */
+    @Test
+    void executeAsync_should_run_supplier_again_when_previous_call_completed() {
+        var singleFlight = new SingleFlight<String, Integer>();
+        var executions = new AtomicInteger();
+
+        singleFlight.executeAsync("range", () -> CompletableFuture.completedFuture(executions.incrementAndGet()));
+        singleFlight.executeAsync("range", () -> CompletableFuture.completedFuture(executions.incrementAndGet()));
+
+        assertThat(executions).hasValue(2);
+        assertThat(singleFlight.getFollowers()).isZero();
+    }
+
+    /**
+     * Tests that the failure of the supplier is propagated to the leader and its followers and not retained.
+     */
+    @Test
+    void executeAsync_should_propagate_failure_when_execution_fails() {
+        var singleFlight = new SingleFlight<String, Integer>();
+        var leader = new CompletableFuture<Integer>();
+
+        CompletableFuture<Integer> first = singleFlight.executeAsync("range", () -> leader);
+        CompletableFuture<Integer> follower = singleFlight.executeAsync("range", () -> leader);
+        leader.completeExceptionally(new IllegalStateException("query failed"));
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(follower).isCompletedExceptionally();
+        assertThat(singleFlight.getInFlight()).isZero();
+        assertThat(singleFlight.executeAsync("range", () -> CompletableFuture.completedFuture(1)))
+                .isCompletedWithValue(1);
+    }
+
+    /**
+     * Tests that a supplier failing before returning its future is rethrown and not retained.
+     */
+    @Test
+    void executeAsync_should_rethrow_exception_when_supplier_throws() {
+        var singleFlight = new SingleFlight<String, Integer>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.executeAsync("range", () -> {
+            throw new IllegalStateException("query failed");
+        }));
+
+        assertThat(singleFlight.getInFlight()).isZero();
+        assertThat(singleFlight.executeAsync("range", () -> CompletableFuture.completedFuture(1)))
+                .isCompletedWithValue(1);
+    }
+
+    /**
+     * Tests that asynchronous followers share the future of the leader without running the supplier,
+     * and that a call after completion starts a new execution.
+     */
+    @Test
+    void executeAsync_should_share_future_when_calls_are_concurrent() {
+        var singleFlight = new SingleFlight<String, Object>();
+        var executions = new AtomicInteger();
+        var leader = new CompletableFuture<Object>();
+
+        CompletableFuture<Object> first = singleFlight.executeAsync("range", () -> {
+            executions.incrementAndGet();
+            return leader;
+        });
+        CompletableFuture<Object> follower = singleFlight.executeAsync("range", () -> {
+            executions.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        assertThat(follower).isNotDone();
+
+        Object shared = new Object();
+        leader.complete(shared);
+
+        assertThat(first).isCompletedWithValue(shared);
+        assertThat(follower).isCompletedWithValue(shared);
+        assertThat(executions).hasValue(1);
+        assertThat(singleFlight.getFollowers()).isEqualTo(1);
+        assertThat(singleFlight.getInFlight()).isZero();
+
+        singleFlight.executeAsync("range", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(new Object());
+        });
+        assertThat(executions).hasValue(2);
+    }
+}
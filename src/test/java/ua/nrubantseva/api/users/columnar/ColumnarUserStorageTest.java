@@ -0,0 +1,61 @@
+package ua.nrubantseva.api.users.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.exception.EntityIdNotFoundException;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserStorage;
+import ua.nrubantseva.api.users.service.UserService;
+import ua.nrubantseva.api.users.writebehind.EmailWriteBehindQueue;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("columnar")
+class ColumnarUserStorageTest {
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EmailWriteBehindQueue emailWriteBehindQueue;
+
+    /**
+     * Tests that the service reads and writes users through the columnar store when the profile is active.
+     */
+    @Test
+    void userService_should_use_columnar_store_when_profile_is_active() {
+        assertThat(userStorage).isInstanceOf(ColumnarUserStorage.class);
+
+        User user = userService.createUser(request("columnar@gmail.com"));
+        assertThrows(DataIntegrityViolationException.class, () -> userService.createUser(request("columnar@gmail.com")));
+
+        userService.updateUserEmailAsync(user.getId(), "columnar.async@gmail.com");
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(userService.findByEmail("columnar.async@gmail.com").getId()).isEqualTo(user.getId());
+        assertThat(userService.findByBirthDateRange(LocalDate.of(1966, 6, 6), LocalDate.of(1966, 6, 7)))
+                .extracting(User::getEmail)
+                .containsExactly("columnar.async@gmail.com");
+        assertThat(userService.search("columnar", 10)).extracting(User::getId).containsExactly(user.getId());
+
+        userService.deleteUserById(user.getId());
+
+        assertThat(userStorage.findById(user.getId())).isEmpty();
+        assertThrows(EntityIdNotFoundException.class, () -> userService.deleteUserById(user.getId()));
+    }
+
+    private UserModificationRequest request(String email) {
+        return new UserModificationRequest(email, "nadiia", "rubant", LocalDate.of(1966, 6, 6), null, null);
+    }
+}
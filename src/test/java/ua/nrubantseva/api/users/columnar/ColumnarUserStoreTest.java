@@ -0,0 +1,172 @@
+package ua.nrubantseva.api.users.columnar;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarUserStoreTest {
+
+    private ColumnarUserStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ColumnarUserStore(4, true);
+    }
+
+    /**
+     * Tests that saved users are materialized with all their attributes, and that new users get an ID.
+     */
+    @Test
+    void findById_should_return_saved_user_when_user_exists() {
+        User user = store.save(new User(null, "nadiia@gmail.com", "Nadiia", "Рубанцева",
+                LocalDate.of(2003, 7, 28), "Kyiv", null));
+
+        assertThat(user.getId()).isNotNull();
+        assertThat(store.findById(user.getId())).contains(user);
+        assertThat(store.findByEmail("nadiia@gmail.com")).contains(user);
+        assertThat(store.findById(UUID.randomUUID())).isEmpty();
+    }
+
+    /**
+     * Tests that the tables keep finding users after the columns grew and rows were moved by deletes.
+     */
+    @Test
+    void delete_should_keep_other_users_reachable_when_rows_are_moved() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(store.save(user("user" + i + "@gmail.com", LocalDate.of(1990, 1, 1).plusDays(i))));
+        }
+
+        for (int i = 0; i < 1000; i += 3) {
+            assertThat(store.delete(users.get(i).getId())).isTrue();
+        }
+
+        assertThat(store.size()).isEqualTo(666);
+        for (int i = 0; i < 1000; i++) {
+            User user = users.get(i);
+            if (i % 3 == 0) {
+                assertThat(store.findById(user.getId())).isEmpty();
+                assertThat(store.findByEmail(user.getEmail())).isEmpty();
+            } else {
+                assertThat(store.findById(user.getId())).contains(user);
+                assertThat(store.findByEmail(user.getEmail())).contains(user);
+            }
+        }
+        assertThat(store.findByBirthDateBetween(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 10)))
+                .extracting(User::getEmail)
+                .containsExactlyInAnyOrder("user1@gmail.com", "user2@gmail.com", "user4@gmail.com",
+                        "user5@gmail.com", "user7@gmail.com", "user8@gmail.com");
+    }
+
+    /**
+     * Tests that strings shared by several users are stored once.
+     */
+    @Test
+    void save_should_deduplicate_strings_when_users_share_values() {
+        for (int i = 0; i < 100; i++) {
+            store.save(user("user" + i + "@gmail.com", LocalDate.of(1990, 1, 1)));
+        }
+
+        assertThat(store.stringCount()).isEqualTo(102);
+    }
+
+    /**
+     * Tests that an email taken by another user is rejected without saving any user of the batch,
+     * and that the email of an updated user is released.
+     */
+    @Test
+    void saveAll_should_reject_batch_when_email_belongs_to_another_user() {
+        User first = store.save(user("first@gmail.com", LocalDate.of(1990, 1, 1)));
+        User second = store.save(user("second@gmail.com", LocalDate.of(1990, 1, 1)));
+
+        User renamed = user("renamed@gmail.com", LocalDate.of(1990, 1, 1));
+        renamed.setId(second.getId());
+        User conflicting = user("first@gmail.com", LocalDate.of(1990, 1, 1));
+        assertThrows(DataIntegrityViolationException.class, () -> store.saveAll(List.of(renamed, conflicting)));
+        assertThat(store.findByEmail("second@gmail.com")).contains(second);
+
+        first.setEmail("second@gmail.com");
+        second.setEmail("first@gmail.com");
+        store.saveAll(List.of(first, second));
+
+        assertThat(store.findByEmail("first@gmail.com")).contains(second);
+        assertThat(store.findByEmail("second@gmail.com")).contains(first);
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    /**
+     * Tests that the strings of replaced values are released, so renaming a user many times
+     * neither grows the store nor keeps the old values.
+     */
+    @Test
+    void save_should_reclaim_strings_when_values_are_replaced() {
+        User user = store.save(user("renamed0@gmail.com", LocalDate.of(1990, 1, 1)));
+        long allocatedBytes = store.allocatedBytes();
+
+        for (int i = 1; i <= 10_000; i++) {
+            user.setEmail("renamed" + i + "@gmail.com");
+            store.save(user);
+        }
+
+        assertThat(store.stringCount()).isEqualTo(3);
+        assertThat(store.allocatedBytes()).isEqualTo(allocatedBytes);
+        assertThat(store.deadStringBytes()).isLessThan("renamed10000@gmail.com".length() * 3L);
+        assertThat(store.findByEmail("renamed10000@gmail.com")).contains(user);
+        assertThat(store.findByEmail("renamed9999@gmail.com")).isEmpty();
+
+        store.delete(user.getId());
+        assertThat(store.stringCount()).isZero();
+    }
+
+    /**
+     * Tests that users keep their values across renames, deletes and the compactions they trigger,
+     * including values shared with other users.
+     */
+    @Test
+    void save_should_keep_values_when_arena_is_compacted() {
+        var random = new Random(42);
+        Map<UUID, User> expected = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation == 0 && !ids.isEmpty()) {
+                UUID id = ids.remove(random.nextInt(ids.size()));
+                store.delete(id);
+                expected.remove(id);
+            } else if (operation < 5 && !ids.isEmpty()) {
+                User user = expected.get(ids.get(random.nextInt(ids.size())));
+                user.setEmail("user" + i + "@gmail.com");
+                user.setAddress(random.nextBoolean() ? null : "Street " + random.nextInt(20));
+                store.save(user);
+            } else {
+                User user = new User(null, "user" + i + "@gmail.com", "Name" + random.nextInt(20), "Rubant",
+                        LocalDate.of(1990, 1, 1), "Street " + random.nextInt(20), null);
+                store.save(user);
+                expected.put(user.getId(), user);
+                ids.add(user.getId());
+            }
+        }
+
+        assertThat(store.size()).isEqualTo(expected.size());
+        for (User user : expected.values()) {
+            assertThat(store.findById(user.getId())).contains(user);
+            assertThat(store.findByEmail(user.getEmail())).contains(user);
+        }
+    }
+
+    private User user(String email, LocalDate birthDate) {
+        return new User(null, email, "Nadiia", "Rubant", birthDate, null, null);
+    }
+}
@@ -1,20 +1,38 @@
 package ua.nrubantseva.api.users.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import ua.nrubantseva.api.users.converter.UserMediaTypes;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
 import ua.nrubantseva.api.users.exception.EntityIdNotFoundException;
+import ua.nrubantseva.api.users.exception.IdempotencyKeyReusedException;
 import ua.nrubantseva.api.users.exception.UserAgeRestrictionException;
+import ua.nrubantseva.api.users.limiter.AdaptiveConcurrencyLimiter;
+import ua.nrubantseva.api.users.limiter.ConcurrencyLimiterRegistry;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.time.LocalDate;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -25,6 +43,9 @@ class UserControllerIntegrationTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ConcurrencyLimiterRegistry limiterRegistry;
+
     /**
      * Tests that findUserByRange returns 200 when the date range is correct.
      *
@@ -34,7 +55,7 @@ class UserControllerIntegrationTest {
     void findUserByRange_ShouldReturn200_WhenRangeIsCorrect() throws Exception {
         createBasicUser();
 
-        mockMvc.perform(get("/users")
+        perform(get("/users")
                         .param("fromDate", "2003-07-28")
                         .param("toDate", "2003-07-30"))
                 .andExpect(status().isOk())
@@ -50,7 +71,7 @@ class UserControllerIntegrationTest {
     void findUserByRange_ShouldReturn404_WhenRangeIsIncorrect() throws Exception {
         createBasicUser();
 
-        MvcResult mvcResult = mockMvc.perform(get("/users")
+        MvcResult mvcResult = perform(get("/users")
                         .param("fromDate", "2043-07-28")
                         .param("toDate", "2003-07-30"))
                 .andExpect(status().isBadRequest())
@@ -67,8 +88,8 @@ class UserControllerIntegrationTest {
      */
     @Test
     void createUser_ShouldReturn201_WhenUserDataCorrect() throws Exception {
-        mockMvc.perform(post("/users")
-                        .param("email", "nadiiarubants@gmail.com")
+        perform(post("/users")
+                        .param("email", uniqueEmail())
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
                         .param("birthDate", "1997-01-01"))
@@ -82,7 +103,7 @@ class UserControllerIntegrationTest {
      */
     @Test
     void createUser_ShouldReturn404_WhenUserHasAgeRestriction() throws Exception {
-        MvcResult mvcResult = mockMvc.perform(post("/users")
+        MvcResult mvcResult = perform(post("/users")
                         .param("email", "nadiiarubants@gmail.com")
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
@@ -102,7 +123,7 @@ class UserControllerIntegrationTest {
      */
     @Test
     void createUser_ShouldReturn404_WhenUserHasIncorrectEmail() throws Exception {
-        MvcResult mvcResult = mockMvc.perform(post("/users")
+        MvcResult mvcResult = perform(post("/users")
                         .param("email", "nadiiarubantsgmail.com")
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
@@ -123,8 +144,8 @@ class UserControllerIntegrationTest {
     void updateUser_ShouldReturn200_WhenUserIdExistAndDataIsCorrect() throws Exception {
         String userId = createBasicUser();
 
-        mockMvc.perform(put("/users/" + userId)
-                        .param("email", "nadiiarubants@gmail.com")
+        perform(put("/users/" + userId)
+                        .param("email", uniqueEmail())
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
                         .param("birthDate", "1997-01-01"))
@@ -140,7 +161,7 @@ class UserControllerIntegrationTest {
     void updateUser_ShouldReturn400_WhenUserIdDoesNotExist() throws Exception {
         String userId = UUID.randomUUID().toString();
 
-        MvcResult mvcResult = mockMvc.perform(put("/users/" + userId)
+        MvcResult mvcResult = perform(put("/users/" + userId)
                         .param("email", "nadiiarubants@gmail.com")
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
@@ -161,7 +182,7 @@ class UserControllerIntegrationTest {
     void updateUser_ShouldReturn404_WhenUserHasAgeRestriction() throws Exception {
         String userId = createBasicUser();
 
-        MvcResult mvcResult = mockMvc.perform(put("/users/" + userId)
+        MvcResult mvcResult = perform(put("/users/" + userId)
                         .param("email", "nadiiarubants@gmail.com")
                         .param("firstName", "nadiia")
                         .param("lastName", "rubants")
@@ -183,8 +204,8 @@ class UserControllerIntegrationTest {
     void updateUserEmail_ShouldReturn200_WhenUserIdExistAndDataIsCorrect() throws Exception {
         String userId = createBasicUser();
 
-        mockMvc.perform(put("/users/" + userId + "/email")
-                        .param("email", "email@gmail.com"))
+        perform(put("/users/" + userId + "/email")
+                        .param("email", uniqueEmail()))
                 .andExpect(status().isOk());
     }
 
@@ -197,7 +218,7 @@ class UserControllerIntegrationTest {
     void updateUserEmail_ShouldReturn400_WhenUserIdDoesNotExist() throws Exception {
         String userId = UUID.randomUUID().toString();
 
-        MvcResult mvcResult = mockMvc.perform(put("/users/" + userId + "/email")
+        MvcResult mvcResult = perform(put("/users/" + userId + "/email")
                         .param("email", "email@gmail.com"))
                 .andExpect(status().isNotFound())
                 .andReturn();
@@ -215,7 +236,7 @@ class UserControllerIntegrationTest {
     void deleteUser_ShouldReturn200_WhenUserIdExist() throws Exception {
         String userId = createBasicUser();
 
-        mockMvc.perform(delete("/users/" + userId))
+        perform(delete("/users/" + userId))
                 .andExpect(status().isOk());
     }
 
@@ -228,7 +249,7 @@ class UserControllerIntegrationTest {
     void deleteUser_ShouldReturn400_WhenUserIdDoesNotExist() throws Exception {
         String userId = UUID.randomUUID().toString();
 
-        MvcResult mvcResult = mockMvc.perform(delete("/users/" + userId))
+        MvcResult mvcResult = perform(delete("/users/" + userId))
                 .andExpect(status().isNotFound())
                 .andReturn();
 
@@ -236,14 +257,413 @@ class UserControllerIntegrationTest {
                 .isInstanceOf(EntityIdNotFoundException.class);
     }
 
+    /**
+     * Tests that a deleted user is hidden from every read path and its email can be reused.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void deleteUser_ShouldHideUserFromReads_WhenUserIsDeleted() throws Exception {
+        String email = uniqueEmail();
+        String userId = createUser(email, "1985-05-05");
+
+        perform(delete("/users/" + userId))
+                .andExpect(status().isOk());
+
+        perform(get("/users")
+                        .param("fromDate", "1985-05-04")
+                        .param("toDate", "1985-05-06"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        perform(get("/users/by-email")
+                        .param("email", email))
+                .andExpect(status().isNotFound());
+        perform(get("/users/search")
+                        .param("q", email))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        perform(delete("/users/" + userId))
+                .andExpect(status().isNotFound());
+        perform(post("/users")
+                        .param("email", email)
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubant")
+                        .param("birthDate", "1985-05-05"))
+                .andExpect(status().isCreated());
+    }
+
+    /**
+     * Tests that findUserByRange returns 503 with Retry-After when the endpoint is at its concurrency limit.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void findUserByRange_ShouldReturn503_WhenEndpointIsOverloaded() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiterRegistry.getLimiter("findUserByRange");
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+
+        try {
+            MvcResult mvcResult = perform(get("/users")
+                            .param("fromDate", "2003-07-28")
+                            .param("toDate", "2003-07-30"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"))
+                    .andExpect(jsonPath("$.path").value("/users"))
+                    .andReturn();
+
+            assertThat(mvcResult.getResolvedException())
+                    .isInstanceOf(ConcurrencyLimitExceededException.class);
+        } finally {
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(0);
+            }
+        }
+    }
+
+    /**
+     * Tests that findUserByRange returns CBOR with epoch day birth dates and binary ids when CBOR is accepted.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void findUserByRange_ShouldReturnCbor_WhenCborIsAccepted() throws Exception {
+        createUser("cbor@gmail.com", "1991-03-14");
+
+        byte[] body = perform(get("/users")
+                        .param("fromDate", "1991-03-13")
+                        .param("toDate", "1991-03-15")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        JsonNode users = new CBORMapper().readTree(body);
+        assertThat(users).hasSize(1);
+        assertThat(users.get(0).get("birthDate").isInt()).isTrue();
+        assertThat(users.get(0).get("birthDate").intValue()).isEqualTo(LocalDate.of(1991, 3, 14).toEpochDay());
+        assertThat(users.get(0).get("id").binaryValue()).hasSize(16);
+    }
+
+    /**
+     * Tests that createUser returns the created user in the compact format when it is accepted.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void createUser_ShouldReturnCompactUser_WhenCompactFormatIsAccepted() throws Exception {
+        byte[] body = perform(post("/users")
+                        .param("email", "compact@gmail.com")
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1991-04-01")
+                        .accept(UserMediaTypes.APPLICATION_USERS_COMPACT))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(UserMediaTypes.APPLICATION_USERS_COMPACT))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        var in = new DataInputStream(new ByteArrayInputStream(body));
+        in.skipNBytes(16);
+        assertThat(in.readInt()).isEqualTo(LocalDate.of(1991, 4, 1).toEpochDay());
+        assertThat(new String(in.readNBytes(in.readUnsignedByte()))).isEqualTo("compact@gmail.com");
+        assertThat(new String(in.readNBytes(in.readUnsignedByte()))).isEqualTo("nadiia");
+        assertThat(new String(in.readNBytes(in.readUnsignedByte()))).isEqualTo("rubants");
+        assertThat(in.readUnsignedByte()).isZero();
+        assertThat(in.readUnsignedByte()).isZero();
+        assertThat(in.available()).isZero();
+    }
+
+    /**
+     * Tests that error responses are written in Smile when Smile is accepted.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void createUser_ShouldReturnSmileError_WhenUserHasAgeRestrictionAndSmileIsAccepted() throws Exception {
+        byte[] body = perform(post("/users")
+                        .param("email", "nadiiarubants@gmail.com")
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "2023-01-01")
+                        .accept(UserMediaTypes.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(UserMediaTypes.APPLICATION_SMILE_VALUE))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        JsonNode error = new SmileMapper().readTree(body);
+        assertThat(error.get("error").asText()).isEqualTo("User must be more than 18 age");
+        assertThat(error.get("path").asText()).isEqualTo("/users");
+        assertThat(error.get("method").asText()).isEqualTo("POST");
+    }
+
+    /**
+     * Tests that searchUsers returns 200 with the users whose fields start with the query.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void searchUsers_ShouldReturn200_WhenQueryMatchesUsers() throws Exception {
+        createUser("zoryana.search@gmail.com", "1990-02-02");
+
+        perform(get("/users/search")
+                        .param("q", "zoryana.s"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].email").value("zoryana.search@gmail.com"));
+    }
+
+    /**
+     * Tests that searchUsers returns 400 when the query is blank.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void searchUsers_ShouldReturn400_WhenQueryIsBlank() throws Exception {
+        MvcResult mvcResult = perform(get("/users/search")
+                        .param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(MethodArgumentNotValidException.class);
+    }
+
+    /**
+     * Tests that findUserByEmail returns 200 with the user when the email exists.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void findUserByEmail_ShouldReturn200_WhenEmailExists() throws Exception {
+        String email = uniqueEmail();
+        String userId = createUser(email, "1990-03-03");
+
+        perform(get("/users/by-email")
+                        .param("email", email))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(userId));
+    }
+
+    /**
+     * Tests that findUserByEmail returns 404 when the email does not exist.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void findUserByEmail_ShouldReturn404_WhenEmailDoesNotExist() throws Exception {
+        MvcResult mvcResult = perform(get("/users/by-email")
+                        .param("email", uniqueEmail()))
+                .andExpect(status().isNotFound())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(EntityIdNotFoundException.class);
+    }
+
+    /**
+     * Tests that createUser returns 409 when a user with the same email exists.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void createUser_ShouldReturn409_WhenEmailAlreadyExists() throws Exception {
+        String email = uniqueEmail();
+        createUser(email, "1990-04-04");
+
+        MvcResult mvcResult = perform(post("/users")
+                        .param("email", email)
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1990-04-04"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("user with this email already exists"))
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    /**
+     * Tests that createUser replays the created user when the request is retried with the same idempotency key,
+     * instead of failing on the existing email.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void createUser_ShouldReplayCreatedUser_WhenIdempotencyKeyIsReused() throws Exception {
+        String idempotencyKey = UUID.randomUUID().toString();
+        String email = uniqueEmail();
+
+        String created = perform(post("/users")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .param("email", email)
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1990-08-08"))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        perform(post("/users")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .param("email", email)
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1990-08-08"))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(created, true));
+    }
+
+    /**
+     * Tests that createUser returns 422 when an idempotency key is reused for a different user.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void createUser_ShouldReturn422_WhenIdempotencyKeyIsReusedForDifferentUser() throws Exception {
+        String idempotencyKey = UUID.randomUUID().toString();
+        perform(post("/users")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .param("email", uniqueEmail())
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1990-08-08"))
+                .andExpect(status().isCreated());
+
+        MvcResult mvcResult = perform(post("/users")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .param("email", uniqueEmail())
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubants")
+                        .param("birthDate", "1990-08-08"))
+                .andExpect(status().isUnprocessableEntity())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    /**
+     * Tests that updateUserEmail returns 409 when another user has the same email.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void updateUserEmail_ShouldReturn409_WhenEmailBelongsToAnotherUser() throws Exception {
+        String email = uniqueEmail();
+        createUser(email, "1990-05-05");
+        String userId = createUser(uniqueEmail(), "1990-05-05");
+
+        perform(put("/users/" + userId + "/email")
+                        .param("email", email))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("user with this email already exists"));
+    }
+
+    /**
+     * Tests that updateUserEmail returns 202 when asynchronous processing is preferred,
+     * and that the queued email is visible to reads right away.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void updateUserEmail_ShouldReturn202_WhenRespondAsyncIsPreferred() throws Exception {
+        String userId = createUser(uniqueEmail(), "1990-06-06");
+        String email = uniqueEmail();
+
+        perform(put("/users/" + userId + "/email")
+                        .header("Prefer", "respond-async")
+                        .param("email", email))
+                .andExpect(status().isAccepted());
+
+        perform(get("/users/by-email")
+                        .param("email", email))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(userId));
+    }
+
+    /**
+     * Tests that updateUserEmail returns 202 when asynchronous processing is one of several preferences.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void updateUserEmail_ShouldReturn202_WhenRespondAsyncIsAmongPreferences() throws Exception {
+        String userId = createUser(uniqueEmail(), "1990-06-06");
+
+        perform(put("/users/" + userId + "/email")
+                        .header("Prefer", "respond-async, wait=10")
+                        .param("email", uniqueEmail()))
+                .andExpect(status().isAccepted());
+    }
+
+    /**
+     * Tests that updateUserEmail returns 404 when asynchronous processing is preferred and the user ID does not exist.
+     *
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    @Test
+    void updateUserEmail_ShouldReturn404_WhenRespondAsyncIsPreferredAndUserIdDoesNotExist() throws Exception {
+        MvcResult mvcResult = perform(put("/users/" + UUID.randomUUID() + "/email")
+                        .header("Prefer", "respond-async")
+                        .param("email", uniqueEmail()))
+                .andExpect(status().isNotFound())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(EntityIdNotFoundException.class);
+    }
+
+    /**
+     * Performs a request, then dispatches its asynchronous result if the endpoint returned one.
+     *
+     * @param request The request to perform.
+     * @return The actions on the result of the request.
+     * @throws Exception if there is an error performing the MVC request.
+     */
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult mvcResult = actions.andReturn();
+        if (mvcResult.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(mvcResult));
+        }
+        return actions;
+    }
+
+    private String uniqueEmail() {
+        return "user-" + UUID.randomUUID() + "@gmail.com";
+    }
+
+    private String createUser(String email, String birthDate) throws Exception {
+        String content = perform(post("/users")
+                        .param("email", email)
+                        .param("firstName", "nadiia")
+                        .param("lastName", "rubant")
+                        .param("birthDate", birthDate))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return JsonPath.read(content, "$.id");
+    }
+
     private String createBasicUser() throws Exception {
-        return mockMvc.perform(post("/users")
-                        .param("email", "email@gmail.com")
+        String content = perform(post("/users")
+                        .param("email", uniqueEmail())
                         .param("firstName", "nadiia")
                         .param("lastName", "rubant")
                         .param("birthDate", "2003-07-28"))
                 .andReturn()
                 .getResponse()
-                .getContentAsString().substring(7, 43);
+                .getContentAsString();
+        return JsonPath.read(content, "$.id");
     }
 }
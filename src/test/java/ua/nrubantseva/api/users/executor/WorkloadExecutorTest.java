@@ -0,0 +1,103 @@
+package ua.nrubantseva.api.users.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WorkloadExecutorTest {
+
+    private ScheduledExecutorService timeoutScheduler;
+
+    private WorkloadExecutor executor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = new WorkloadExecutor("test", 1, 1, 200, 1, timeoutScheduler,
+                new SimpleMeterRegistry().timer("wait"));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        executor.shutdown(5, TimeUnit.SECONDS);
+        timeoutScheduler.shutdownNow();
+    }
+
+    /**
+     * Tests that a task is rejected immediately when the thread is busy and the queue is full.
+     */
+    @Test
+    void submit_should_reject_task_when_queue_is_full() {
+        executor.submit(this::block);
+        executor.submit(() -> "queued");
+
+        assertThrows(ConcurrencyLimitExceededException.class, () -> executor.submit(() -> "rejected"));
+        assertThat(executor.getRejected()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that a queued task that times out fails and never runs, freeing its place in the queue.
+     */
+    @Test
+    void submit_should_fail_and_drop_queued_task_when_it_times_out() throws Exception {
+        executor.submit(this::block);
+        var ran = new AtomicBoolean();
+        CompletableFuture<String> queued = executor.submit(() -> {
+            ran.set(true);
+            return "queued";
+        });
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(ConcurrencyLimitExceededException.class);
+
+        release.countDown();
+        assertThat(executor.submit(() -> "next").get(5, TimeUnit.SECONDS)).isEqualTo("next");
+        assertThat(ran).isFalse();
+        assertThat(executor.getTimedOut()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that a task that started before the queue timeout completes with its result, however long it runs.
+     */
+    @Test
+    void submit_should_complete_started_task_when_it_runs_past_timeout() throws Exception {
+        var started = new CountDownLatch(1);
+        CompletableFuture<String> running = executor.submit(() -> {
+            started.countDown();
+            return block();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread.sleep(400);
+        assertThat(running).isNotDone();
+        release.countDown();
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("blocked");
+        assertThat(executor.getTimedOut()).isZero();
+    }
+
+    private String block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "blocked";
+    }
+}
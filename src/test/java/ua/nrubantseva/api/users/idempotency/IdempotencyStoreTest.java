@@ -0,0 +1,161 @@
+package ua.nrubantseva.api.users.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ua.nrubantseva.api.users.exception.IdempotencyKeyReusedException;
+import ua.nrubantseva.api.users.executor.WorkloadExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyStoreTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final IdempotencyStore<String> store = new IdempotencyStore<>(2, Duration.ofNanos(100), clock::get);
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    /**
+     * Tests that a call arriving while the operation runs waits for it, and a later call replays its result.
+     */
+    @Test
+    void execute_should_run_operation_once_when_key_is_reused() {
+        var operation = new CompletableFuture<String>();
+
+        CompletableFuture<String> first = store.execute("key", "request", () -> run(operation));
+        CompletableFuture<String> concurrent = store.execute("key", "request", () -> run(new CompletableFuture<>()));
+        assertThat(concurrent).isNotDone();
+
+        operation.complete("user");
+        CompletableFuture<String> retry = store.execute("key", "request", () -> run(new CompletableFuture<>()));
+
+        assertThat(first).isCompletedWithValue("user");
+        assertThat(concurrent).isCompletedWithValue("user");
+        assertThat(retry).isCompletedWithValue("user");
+        assertThat(executions).hasValue(1);
+        assertThat(store.getExecuted()).isEqualTo(1);
+        assertThat(store.getAwaited()).isEqualTo(1);
+        assertThat(store.getReplayed()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that a key cannot be reused for a different request.
+     */
+    @Test
+    void execute_should_throw_exception_when_key_is_reused_for_different_request() {
+        store.execute("key", "request", () -> run(CompletableFuture.completedFuture("user")));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> store.execute("key", "other request", () -> run(new CompletableFuture<>())));
+        assertThat(executions).hasValue(1);
+    }
+
+    /**
+     * Tests that a failed operation is forgotten, so a retry runs it again.
+     */
+    @Test
+    void execute_should_run_operation_again_when_previous_operation_failed() {
+        CompletableFuture<String> failed = store.execute("key", "request",
+                () -> run(CompletableFuture.failedFuture(new IllegalStateException())));
+        CompletableFuture<String> retry = store.execute("key", "request",
+                () -> run(CompletableFuture.completedFuture("user")));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(retry).isCompletedWithValue("user");
+        assertThat(executions).hasValue(2);
+    }
+
+    /**
+     * Tests that an operation running past the queue timeout of its executor keeps its key,
+     * so a retry waits for its result instead of running it again.
+     */
+    @Test
+    void execute_should_await_started_operation_when_it_runs_past_executor_timeout() throws Exception {
+        ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+        var executor = new WorkloadExecutor("test", 1, 1, 100, 1, timeoutScheduler,
+                new SimpleMeterRegistry().timer("wait"));
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try {
+            CompletableFuture<String> first = store.execute("key", "request", () -> run(executor.submit(() -> {
+                started.countDown();
+                await(release);
+                return "user";
+            })));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(300);
+
+            CompletableFuture<String> retry = store.execute("key", "request", () -> run(new CompletableFuture<>()));
+            assertThat(retry).isNotDone();
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("user");
+            assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo("user");
+            assertThat(executions).hasValue(1);
+        } finally {
+            release.countDown();
+            executor.shutdown(5, TimeUnit.SECONDS);
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that entries expire after the time to live, and that the oldest entries are evicted when the store is full.
+     */
+    @Test
+    void execute_should_forget_keys_when_they_expire_or_store_is_full() {
+        store.execute("first", "request", () -> run(CompletableFuture.completedFuture("user")));
+        clock.set(100);
+        store.execute("first", "request", () -> run(CompletableFuture.completedFuture("user")));
+        assertThat(executions).hasValue(2);
+
+        store.execute("second", "request", () -> run(CompletableFuture.completedFuture("user")));
+        store.execute("third", "request", () -> run(CompletableFuture.completedFuture("user")));
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.getEvicted()).isEqualTo(1);
+
+        store.execute("first", "request", () -> run(CompletableFuture.completedFuture("user")));
+        assertThat(executions).hasValue(5);
+    }
+
+    /**
+     * Tests that a full store evicts the oldest completed entry rather than the entry of a running operation.
+     */
+    @Test
+    void execute_should_keep_running_operation_when_store_is_full() {
+        var running = new CompletableFuture<String>();
+        store.execute("running", "request", () -> run(running));
+        store.execute("completed", "request", () -> run(CompletableFuture.completedFuture("user")));
+
+        store.execute("new", "request", () -> run(CompletableFuture.completedFuture("user")));
+        CompletableFuture<String> retry = store.execute("running", "request", () -> run(new CompletableFuture<>()));
+
+        assertThat(store.getEvicted()).isEqualTo(1);
+        assertThat(executions).hasValue(3);
+        running.complete("user");
+        assertThat(retry).isCompletedWithValue("user");
+    }
+
+    private CompletableFuture<String> run(CompletableFuture<String> result) {
+        executions.incrementAndGet();
+        return result;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ua.nrubantseva.api.users.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Tests that tryAcquire rejects requests once the limit is reached.
+     */
+    @Test
+    void try_acquire_should_reject_when_limit_is_reached() {
+        var limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, THRESHOLD_NANOS, 0.5);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(limiter.getRejected()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that the limit grows additively when requests are fast and the limiter is utilized.
+     */
+    @Test
+    void release_should_increase_limit_when_latency_is_low() {
+        var limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, THRESHOLD_NANOS, 0.5);
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that the limit does not grow while the limiter is mostly idle.
+     */
+    @Test
+    void release_should_keep_limit_when_limiter_is_idle() {
+        var limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 10, THRESHOLD_NANOS, 0.5);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    /**
+     * Tests that the limit is decreased multiplicatively, but not below the minimum, when requests are slow.
+     */
+    @Test
+    void release_should_decrease_limit_when_latency_is_high() {
+        var limiter = new AdaptiveConcurrencyLimiter("test", 8, 3, 10, THRESHOLD_NANOS, 0.5);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limiter.getLimit()).isEqualTo(3);
+    }
+
+    /**
+     * Tests that the limiter rejects invalid bounds.
+     */
+    @Test
+    void constructor_should_throw_exception_when_bounds_are_invalid() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiter("test", 2, 5, 4, THRESHOLD_NANOS, 0.5));
+    }
+}
@@ -0,0 +1,103 @@
+package ua.nrubantseva.api.users.purge;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserRepository;
+import ua.nrubantseva.api.users.service.UserService;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "user.purge.interval-ms=600000",
+        "user.purge.window-start=00:00",
+        "user.purge.window-end=00:00",
+        "user.purge.batch-size=2",
+        "user.purge.pause-between-batches-ms=0"
+})
+class TombstonePurgerTest {
+
+    @Autowired
+    private TombstonePurger tombstonePurger;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Tests that deleted users are kept as tombstones until the purge removes them in batches.
+     *
+     * @throws InterruptedException if interrupted while purging.
+     */
+    @Test
+    void purge_should_remove_tombstones_in_batches_when_window_is_open() throws InterruptedException {
+        User kept = createUser();
+        for (int i = 0; i < 5; i++) {
+            userService.deleteUserById(createUser().getId());
+        }
+        long batchesBefore = tombstonePurger.getBatches();
+
+        assertThat(userRepository.countTombstones()).isEqualTo(5);
+
+        assertThat(tombstonePurger.purge()).isEqualTo(5);
+        assertThat(tombstonePurger.getBatches() - batchesBefore).isEqualTo(3);
+        assertThat(tombstonePurger.getBacklog()).isZero();
+        assertThat(userRepository.countTombstones()).isZero();
+        assertThat(userRepository.findById(kept.getId())).isPresent();
+    }
+
+    /**
+     * Tests that outside the purge window, the tombstones are neither purged nor counted.
+     *
+     * @throws InterruptedException if interrupted while purging.
+     */
+    @Test
+    void purge_should_skip_count_when_window_is_closed() throws InterruptedException {
+        tombstonePurger.purge();
+        LocalTime now = LocalTime.now();
+        ReflectionTestUtils.setField(tombstonePurger, "windowStart", now.plusHours(2).toString());
+        ReflectionTestUtils.setField(tombstonePurger, "windowEnd", now.plusHours(3).toString());
+        try {
+            userService.deleteUserById(createUser().getId());
+
+            assertThat(tombstonePurger.purge()).isZero();
+            assertThat(tombstonePurger.getBacklog()).isZero();
+            assertThat(userRepository.countTombstones()).isEqualTo(1);
+        } finally {
+            ReflectionTestUtils.setField(tombstonePurger, "windowStart", "00:00");
+            ReflectionTestUtils.setField(tombstonePurger, "windowEnd", "00:00");
+        }
+    }
+
+    /**
+     * Tests the purge window checks, including windows spanning midnight and windows that are always open.
+     */
+    @Test
+    void isWithinWindow_should_handle_windows_spanning_midnight() {
+        LocalTime one = LocalTime.of(1, 0);
+        LocalTime five = LocalTime.of(5, 0);
+        LocalTime noon = LocalTime.NOON;
+
+        assertThat(TombstonePurger.isWithinWindow(one, five, LocalTime.of(3, 0))).isTrue();
+        assertThat(TombstonePurger.isWithinWindow(one, five, five)).isFalse();
+        assertThat(TombstonePurger.isWithinWindow(one, five, noon)).isFalse();
+        assertThat(TombstonePurger.isWithinWindow(LocalTime.of(22, 0), five, LocalTime.of(23, 0))).isTrue();
+        assertThat(TombstonePurger.isWithinWindow(LocalTime.of(22, 0), five, LocalTime.of(2, 0))).isTrue();
+        assertThat(TombstonePurger.isWithinWindow(LocalTime.of(22, 0), five, noon)).isFalse();
+        assertThat(TombstonePurger.isWithinWindow(noon, noon, one)).isTrue();
+    }
+
+    private User createUser() {
+        return userService.createUser(new UserModificationRequest("user-" + UUID.randomUUID() + "@gmail.com",
+                "n", "r", LocalDate.of(1990, 1, 1), null, null));
+    }
+}
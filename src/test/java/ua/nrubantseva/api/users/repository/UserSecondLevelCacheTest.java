@@ -0,0 +1,129 @@
+package ua.nrubantseva.api.users.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.service.UserService;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UserSecondLevelCacheTest {
+
+    private static final LocalDate BIRTH_DATE = LocalDate.of(1977, 7, 7);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Tests that a user is loaded from the entity cache instead of the database once it is cached.
+     */
+    @Test
+    void findById_should_hit_entity_cache_when_user_is_cached() {
+        User user = createUser("cached");
+        userRepository.findById(user.getId());
+
+        long hits = statistics.getDomainDataRegionStatistics(User.CACHE_REGION).getHitCount();
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(userRepository.findById(user.getId())).isPresent();
+
+        assertThat(statistics.getDomainDataRegionStatistics(User.CACHE_REGION).getHitCount()).isEqualTo(hits + 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(meterRegistry.find("hibernate.second.level.cache.requests")
+                .tags("region", User.CACHE_REGION, "result", "hit").functionCounter())
+                .isNotNull();
+    }
+
+    /**
+     * Tests that a repeated range search is served by the query cache, and that updateUser invalidates it.
+     */
+    @Test
+    void findByBirthDateRange_should_return_updated_user_when_user_is_updated() {
+        User user = createUser("range");
+        userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1));
+        long queryHits = statistics.getQueryRegionStatistics(UserRepository.USERS_BY_BIRTH_DATE_CACHE_REGION).getHitCount();
+
+        userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1));
+        assertThat(statistics.getQueryRegionStatistics(UserRepository.USERS_BY_BIRTH_DATE_CACHE_REGION).getHitCount())
+                .isEqualTo(queryHits + 1);
+
+        userService.updateUser(user.getId(), new UserModificationRequest(user.getEmail(), "renamed",
+                user.getLastName(), BIRTH_DATE, null, null));
+
+        assertThat(userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1)))
+                .filteredOn(found -> found.getId().equals(user.getId()))
+                .singleElement()
+                .extracting(User::getFirstName)
+                .isEqualTo("renamed");
+        assertThat(userRepository.findById(user.getId())).get().extracting(User::getFirstName).isEqualTo("renamed");
+    }
+
+    /**
+     * Tests that a cached user is seen with its new email after updateUserEmail.
+     */
+    @Test
+    void findById_should_return_new_email_when_email_is_updated() {
+        User user = createUser("email");
+        userRepository.findById(user.getId());
+        userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1));
+
+        userService.updateUserEmail(user.getId(), "updated-" + user.getEmail());
+
+        assertThat(userRepository.findById(user.getId())).get().extracting(User::getEmail)
+                .isEqualTo("updated-" + user.getEmail());
+        assertThat(userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1)))
+                .filteredOn(found -> found.getId().equals(user.getId()))
+                .singleElement()
+                .extracting(User::getEmail)
+                .isEqualTo("updated-" + user.getEmail());
+        assertThat(userService.findByEmail("updated-" + user.getEmail()).getId()).isEqualTo(user.getId());
+    }
+
+    /**
+     * Tests that a cached user is no longer found after deleteUserById.
+     */
+    @Test
+    void findById_should_return_empty_when_cached_user_is_deleted() {
+        User user = createUser("deleted");
+        userRepository.findById(user.getId());
+        userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1));
+
+        userService.deleteUserById(user.getId());
+
+        assertThat(userRepository.findById(user.getId())).isEmpty();
+        assertThat(userService.findByBirthDateRange(BIRTH_DATE, BIRTH_DATE.plusDays(1)))
+                .extracting(User::getId)
+                .doesNotContain(user.getId());
+    }
+
+    private User createUser(String firstName) {
+        return userService.createUser(new UserModificationRequest("user-" + UUID.randomUUID() + "@gmail.com",
+                firstName, "r", BIRTH_DATE, null, null));
+    }
+}
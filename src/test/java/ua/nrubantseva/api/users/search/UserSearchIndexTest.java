@@ -0,0 +1,127 @@
+package ua.nrubantseva.api.users.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ua.nrubantseva.api.users.model.User;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSearchIndexTest {
+
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        userSearchIndex = new UserSearchIndex(null);
+        ReflectionTestUtils.setField(userSearchIndex, "maxCandidates", 1000);
+    }
+
+    /**
+     * Tests that search finds users by a prefix of the first name, last name or email, ignoring case.
+     */
+    @Test
+    void search_should_find_users_when_query_is_prefix_of_any_field() {
+        User anna = index("Anna", "Smith", "a.smith@gmail.com");
+        User john = index("John", "Annaberg", "john@gmail.com");
+        User mark = index("Mark", "Brown", "annam@gmail.com");
+        index("Peter", "Parker", "peter@gmail.com");
+
+        assertThat(userSearchIndex.search("ANNA", 10))
+                .containsExactly(anna.getId(), john.getId(), mark.getId());
+    }
+
+    /**
+     * Tests that exact matches are ranked before prefix matches.
+     */
+    @Test
+    void search_should_rank_exact_match_first() {
+        User smithson = index("Kate", "Smithson", "kate@gmail.com");
+        User smith = index("Kate", "Smith", "kate.s@gmail.com");
+
+        assertThat(userSearchIndex.search("smith", 10)).containsExactly(smith.getId(), smithson.getId());
+    }
+
+    /**
+     * Tests that every term of the query must match one of the user fields.
+     */
+    @Test
+    void search_should_match_all_terms() {
+        index("Anna", "Smith", "anna@gmail.com");
+        User annaBrown = index("Anna", "Brown", "anna.b@gmail.com");
+
+        assertThat(userSearchIndex.search("anna bro", 10)).containsExactly(annaBrown.getId());
+    }
+
+    /**
+     * Tests that a user matching a rare term is found even when a common term has more candidates than are scanned.
+     */
+    @Test
+    void search_should_find_rare_match_when_first_term_is_common() {
+        ReflectionTestUtils.setField(userSearchIndex, "maxCandidates", 3);
+        for (int i = 0; i < 5; i++) {
+            index("Johnny" + i, "Brown", "johnny" + i + "@gmail.com");
+        }
+        User johnSmith = index("Johnz", "Smith", "jsmith@gmail.com");
+
+        assertThat(userSearchIndex.search("john smith", 10)).containsExactly(johnSmith.getId());
+    }
+
+    /**
+     * Tests that search returns at most the requested number of users.
+     */
+    @Test
+    void search_should_limit_results() {
+        for (int i = 0; i < 5; i++) {
+            index("Anna", "Smith" + i, "anna" + i + "@gmail.com");
+        }
+
+        assertThat(userSearchIndex.search("anna", 3)).hasSize(3);
+    }
+
+    /**
+     * Tests that re-indexing a user replaces its previous values and removing it drops it from the index.
+     */
+    @Test
+    void index_and_remove_should_keep_index_up_to_date() {
+        User user = index("Anna", "Smith", "anna@gmail.com");
+        user.setEmail("kate@gmail.com");
+        userSearchIndex.index(user);
+
+        assertThat(userSearchIndex.search("kate", 10)).containsExactly(user.getId());
+        assertThat(userSearchIndex.search("anna@", 10)).isEmpty();
+
+        userSearchIndex.remove(user.getId());
+
+        assertThat(userSearchIndex.search("smith", 10)).isEmpty();
+        assertThat(userSearchIndex.size()).isZero();
+    }
+
+    /**
+     * Tests that refresh indexes the committed state of the user, or removes the user once it no longer exists.
+     */
+    @Test
+    void refresh_should_index_committed_state_of_user() {
+        User user = index("Anna", "Smith", "anna@gmail.com");
+        User committed = new User(user.getId(), "kate@gmail.com", "Kate", "Smith", user.getBirthDate(), null, null);
+
+        userSearchIndex.refresh(user.getId(), () -> Optional.of(committed));
+
+        assertThat(userSearchIndex.search("kate", 10)).containsExactly(user.getId());
+        assertThat(userSearchIndex.search("anna", 10)).isEmpty();
+
+        userSearchIndex.refresh(user.getId(), Optional::empty);
+
+        assertThat(userSearchIndex.size()).isZero();
+    }
+
+    private User index(String firstName, String lastName, String email) {
+        User user = new User(UUID.randomUUID(), email, firstName, lastName, LocalDate.of(1990, 1, 1), null, null);
+        userSearchIndex.index(user);
+        return user;
+    }
+}
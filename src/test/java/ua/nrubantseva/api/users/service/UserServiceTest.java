@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
 import ua.nrubantseva.api.users.dto.UserModificationRequest;
 import ua.nrubantseva.api.users.exception.EntityIdNotFoundException;
 import ua.nrubantseva.api.users.exception.UserAgeRestrictionException;
@@ -15,6 +16,8 @@ import java.time.LocalDate;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -28,6 +31,9 @@ class UserServiceTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private User userFromDb;
     private UserModificationRequest userModificationRequest;
 
@@ -44,11 +50,11 @@ class UserServiceTest {
      */
     @Test
     void create_user_should_create_user_when_user_data_is_correct() {
-        when(userRepository.save(any(User.class))).thenReturn(userFromDb);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(userFromDb);
 
         userService.createUser(userModificationRequest);
 
-        verify(userRepository).save(any(User.class));
+        verify(userRepository).saveAndFlush(any(User.class));
     }
 
     /**
@@ -68,13 +74,13 @@ class UserServiceTest {
      */
     @Test
     void update_user_should_update_user_when_user_data_is_correct() {
-        when(userRepository.save(any(User.class))).thenReturn(userFromDb);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(userFromDb);
         when(userRepository.findById(userFromDb.getId())).thenReturn(Optional.of(userFromDb));
 
         userService.updateUser(userFromDb.getId(), userModificationRequest);
 
-        verify(userRepository).save(any(User.class));
-        verify(userRepository).findById(any(UUID.class));
+        verify(userRepository).saveAndFlush(any(User.class));
+        verify(userRepository, times(2)).findById(userFromDb.getId());
     }
 
     /**
@@ -106,13 +112,13 @@ class UserServiceTest {
      */
     @Test
     void update_user_email_should_update_user_email_when_user_data_is_correct() {
-        when(userRepository.save(any(User.class))).thenReturn(userFromDb);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(userFromDb);
         when(userRepository.findById(userFromDb.getId())).thenReturn(Optional.of(userFromDb));
 
         userService.updateUserEmail(userFromDb.getId(), "e@e.e");
 
-        verify(userRepository).save(any(User.class));
-        verify(userRepository).findById(any(UUID.class));
+        verify(userRepository).saveAndFlush(any(User.class));
+        verify(userRepository, times(2)).findById(userFromDb.getId());
     }
 
     /**
@@ -127,6 +133,53 @@ class UserServiceTest {
         verify(userRepository).findById(userFromDb.getId());
     }
 
+    /**
+     * Tests that updateUserEmailAsync method checks the repository, so a stored user missing from the search index
+     * can still be updated.
+     */
+    @Test
+    void update_user_email_async_should_queue_email_when_user_exists_in_repository() {
+        when(userRepository.existsById(userFromDb.getId())).thenReturn(true);
+
+        userService.updateUserEmailAsync(userFromDb.getId(), "e@e.e");
+
+        assertEquals("e@e.e", userService.emailWriteBehindQueue.getPendingEmail(userFromDb.getId()));
+        userService.emailWriteBehindQueue.discard(userFromDb.getId());
+    }
+
+    /**
+     * Tests that updateUserEmailAsync method throws an exception when the user ID does not exist.
+     */
+    @Test
+    void update_user_email_async_should_throw_exception_when_user_id_does_not_exist() {
+        when(userRepository.existsById(userFromDb.getId())).thenReturn(false);
+
+        assertThrows(EntityIdNotFoundException.class,
+                () -> userService.updateUserEmailAsync(userFromDb.getId(), "e@e.e"));
+
+        verify(userRepository).existsById(userFromDb.getId());
+    }
+
+    /**
+     * Tests that findByEmail method returns the user when the email exists.
+     */
+    @Test
+    void find_by_email_should_return_user_when_email_exists() {
+        when(userRepository.findByEmail(userFromDb.getEmail())).thenReturn(Optional.of(userFromDb));
+
+        assertEquals(userFromDb, userService.findByEmail(userFromDb.getEmail()));
+    }
+
+    /**
+     * Tests that findByEmail method throws an exception when the email does not exist.
+     */
+    @Test
+    void find_by_email_should_throw_exception_when_email_does_not_exist() {
+        when(userRepository.findByEmail(userFromDb.getEmail())).thenReturn(Optional.empty());
+
+        assertThrows(EntityIdNotFoundException.class, () -> userService.findByEmail(userFromDb.getEmail()));
+    }
+
     /**
      * Tests that deleteUserById method deletes a user when the user ID exists.
      */
@@ -137,7 +190,44 @@ class UserServiceTest {
         userService.deleteUserById(userFromDb.getId());
 
         verify(userRepository).deleteById(any(UUID.class));
-        verify(userRepository).findById(any(UUID.class));
+        verify(userRepository, times(2)).findById(userFromDb.getId());
+    }
+
+    /**
+     * Tests that deleteUserById method removes the user from the search index once it is gone from the storage.
+     */
+    @Test
+    void delete_user_should_remove_user_from_search_index() {
+        userFromDb.setFirstName("Deletedname");
+        userService.userSearchIndex.index(userFromDb);
+        when(userRepository.findById(userFromDb.getId())).thenReturn(Optional.of(userFromDb), Optional.empty());
+
+        userService.deleteUserById(userFromDb.getId());
+
+        assertThat(userService.userSearchIndex.search("deletedname", 10)).isEmpty();
+    }
+
+    /**
+     * Tests that a write within a transaction reaches the search index only once the transaction commits.
+     */
+    @Test
+    void create_user_should_index_user_only_when_transaction_commits() {
+        userFromDb.setFirstName("Transactionalname");
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(userFromDb);
+        when(userRepository.findById(userFromDb.getId())).thenReturn(Optional.of(userFromDb));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.createUser(userModificationRequest);
+            status.setRollbackOnly();
+        });
+        assertThat(userService.userSearchIndex.search("transactionalname", 10)).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.createUser(userModificationRequest);
+            assertThat(userService.userSearchIndex.search("transactionalname", 10)).isEmpty();
+        });
+        assertThat(userService.userSearchIndex.search("transactionalname", 10)).containsExactly(userFromDb.getId());
+        userService.userSearchIndex.remove(userFromDb.getId());
     }
 
     /**
@@ -0,0 +1,40 @@
+package ua.nrubantseva.api.users.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "user.storage.verify-sample-size=3")
+class StorageStartupVerifierTest {
+
+    @Autowired
+    private StorageStartupVerifier storageStartupVerifier;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Tests that the verification passes when every user is found through the birth date index.
+     */
+    @Test
+    void verify_should_pass_when_index_matches_table() {
+        for (int i = 0; i < 5; i++) {
+            userRepository.saveAndFlush(new User(null, "user-" + UUID.randomUUID() + "@gmail.com",
+                    "n", "r", LocalDate.of(2000, 1, 1).plusDays(i), null, null));
+        }
+        Long users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"user\"", Long.class);
+
+        assertThat(storageStartupVerifier.verify()).isEqualTo(users);
+    }
+}
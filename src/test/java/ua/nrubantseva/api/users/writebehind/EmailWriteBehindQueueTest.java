@@ -0,0 +1,184 @@
+package ua.nrubantseva.api.users.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+import ua.nrubantseva.api.users.dto.UserModificationRequest;
+import ua.nrubantseva.api.users.exception.ConcurrencyLimitExceededException;
+import ua.nrubantseva.api.users.model.User;
+import ua.nrubantseva.api.users.repository.UserRepository;
+import ua.nrubantseva.api.users.service.UserService;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+@SpringBootTest(properties = {
+        "user.email.write-behind.capacity=2",
+        "user.email.write-behind.flush-interval-ms=600000",
+        "user.email.write-behind.offer-timeout-ms=10"
+})
+class EmailWriteBehindQueueTest {
+
+    @Autowired
+    private EmailWriteBehindQueue emailWriteBehindQueue;
+
+    @Autowired
+    private UserService userService;
+
+    @SpyBean
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        emailWriteBehindQueue.flushAll();
+    }
+
+    /**
+     * Tests that updates of the same user are coalesced and only the last one is written.
+     */
+    @Test
+    void enqueue_should_write_last_email_when_user_is_updated_repeatedly() {
+        User user = createUser();
+
+        userService.updateUserEmailAsync(user.getId(), "first-" + user.getEmail());
+        userService.updateUserEmailAsync(user.getId(), "last-" + user.getEmail());
+
+        assertThat(emailWriteBehindQueue.size()).isEqualTo(1);
+        assertThat(userService.findByEmail("last-" + user.getEmail()).getId()).isEqualTo(user.getId());
+        assertThat(userRepository.findById(user.getId())).get().extracting(User::getEmail).isEqualTo(user.getEmail());
+
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(emailWriteBehindQueue.isEmpty()).isTrue();
+        assertThat(userRepository.findById(user.getId())).get().extracting(User::getEmail)
+                .isEqualTo("last-" + user.getEmail());
+    }
+
+    /**
+     * Tests that updates of new users are rejected while the queue is full, but updates of queued users are not.
+     */
+    @Test
+    void enqueue_should_reject_new_user_when_queue_is_full() {
+        User first = createUser();
+        User second = createUser();
+        User third = createUser();
+
+        emailWriteBehindQueue.enqueue(first.getId(), "a-" + first.getEmail());
+        emailWriteBehindQueue.enqueue(second.getId(), "a-" + second.getEmail());
+
+        assertThrows(ConcurrencyLimitExceededException.class,
+                () -> emailWriteBehindQueue.enqueue(third.getId(), "a-" + third.getEmail()));
+        emailWriteBehindQueue.enqueue(first.getId(), "b-" + first.getEmail());
+
+        emailWriteBehindQueue.flushAll();
+        emailWriteBehindQueue.enqueue(third.getId(), "a-" + third.getEmail());
+    }
+
+    /**
+     * Tests that an update violating the unique email index is dropped without losing the rest of the batch.
+     */
+    @Test
+    void flush_should_drop_only_conflicting_update_when_email_is_taken() {
+        User first = createUser();
+        User second = createUser();
+        User taken = createUser();
+
+        emailWriteBehindQueue.enqueue(first.getId(), taken.getEmail());
+        emailWriteBehindQueue.enqueue(second.getId(), "new-" + second.getEmail());
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(userRepository.findById(first.getId())).get().extracting(User::getEmail).isEqualTo(first.getEmail());
+        assertThat(userRepository.findById(second.getId())).get().extracting(User::getEmail)
+                .isEqualTo("new-" + second.getEmail());
+    }
+
+    /**
+     * Tests that a batch failing for a reason other than a constraint violation is kept in the queue,
+     * and that draining the queue logs the failure instead of throwing.
+     */
+    @Test
+    void flush_should_keep_batch_when_database_write_fails() {
+        User first = createUser();
+        User second = createUser();
+        doThrow(new CannotAcquireLockException("Lock wait timeout")).when(userRepository).saveAllAndFlush(anyIterable());
+
+        emailWriteBehindQueue.enqueue(first.getId(), "new-" + first.getEmail());
+        emailWriteBehindQueue.enqueue(second.getId(), "new-" + second.getEmail());
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(emailWriteBehindQueue.size()).isEqualTo(2);
+        assertThat(emailWriteBehindQueue.getPendingEmail(first.getId())).isEqualTo("new-" + first.getEmail());
+        assertThat(userService.findByEmail("new-" + second.getEmail()).getId()).isEqualTo(second.getId());
+        assertThat(userRepository.findById(first.getId())).get().extracting(User::getEmail).isEqualTo(first.getEmail());
+
+        reset(userRepository);
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(emailWriteBehindQueue.isEmpty()).isTrue();
+        assertThat(userRepository.findById(first.getId())).get().extracting(User::getEmail)
+                .isEqualTo("new-" + first.getEmail());
+        assertThat(userRepository.findById(second.getId())).get().extracting(User::getEmail)
+                .isEqualTo("new-" + second.getEmail());
+    }
+
+    /**
+     * Tests that the batch being flushed counts against the capacity, so putting a failed batch back in the queue
+     * does not grow it past its capacity.
+     */
+    @Test
+    void enqueue_should_reject_new_user_when_batch_being_flushed_fills_queue() {
+        User first = createUser();
+        User second = createUser();
+        User third = createUser();
+        var rejected = new AtomicBoolean();
+        doAnswer(invocation -> {
+            try {
+                emailWriteBehindQueue.enqueue(third.getId(), "new-" + third.getEmail());
+            } catch (ConcurrencyLimitExceededException e) {
+                rejected.set(true);
+            }
+            throw new CannotAcquireLockException("Lock wait timeout");
+        }).when(userRepository).saveAllAndFlush(anyIterable());
+
+        emailWriteBehindQueue.enqueue(first.getId(), "new-" + first.getEmail());
+        emailWriteBehindQueue.enqueue(second.getId(), "new-" + second.getEmail());
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(rejected).isTrue();
+        assertThat(emailWriteBehindQueue.size()).isEqualTo(2);
+        assertThat(emailWriteBehindQueue.getPendingEmail(third.getId())).isNull();
+
+        reset(userRepository);
+    }
+
+    /**
+     * Tests that a synchronous update discards the queued email of the user.
+     */
+    @Test
+    void discard_should_drop_pending_email_when_user_is_updated_synchronously() {
+        User user = createUser();
+
+        userService.updateUserEmailAsync(user.getId(), "queued-" + user.getEmail());
+        userService.updateUserEmail(user.getId(), "sync-" + user.getEmail());
+        emailWriteBehindQueue.flushAll();
+
+        assertThat(userRepository.findById(user.getId())).get().extracting(User::getEmail)
+                .isEqualTo("sync-" + user.getEmail());
+    }
+
+    private User createUser() {
+        return userService.createUser(new UserModificationRequest("user-" + UUID.randomUUID() + "@gmail.com",
+                "n", "r", LocalDate.of(1990, 1, 1), null, null));
+    }
+}